@@ -0,0 +1,276 @@
+package es.emi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Converts published scheduling benchmarks into Machine/Calendar/JobFamily instances, one time unit of
+// the file being one second:
+//   parallel machine (.txt, .pm)  n m, then n processing times, optionally followed by m integer slowness
+//                                 factors for uniform machines (processing time = time x factor)
+//   flexible job shop (.fjs)      Brandimarte/Hurink format: jobs machines [average], then one line per
+//                                 job: operations, and per operation k followed by k pairs machine time
+// Jobs with the same processing time become one family. The formats carry no calendars, so every machine
+// gets one window long enough for any schedule, or repeating shifts of on/off units when asked for.
+// FamilyScheduling has neither precedences nor machine eligibility, so a flexible job shop comes in as
+// its parallel-machine relaxation: every operation is a job with its shortest processing time and the
+// makespan found is a lower bound for the job shop, not a job-shop schedule.
+public class BenchmarkImporter {
+
+    public enum Format {
+        PARALLEL_MACHINE, FLEXIBLE_JOB_SHOP
+    }
+
+    public static final ZonedDateTime DEFAULT_REFERENCE_POINT = ZonedDateTime.parse("2024-08-07T00:00:00Z");
+
+    private ZonedDateTime referencePoint = DEFAULT_REFERENCE_POINT;
+    private int shiftOn;
+    private int shiftOff;
+
+    public static Format formatOf(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".fjs") ? Format.FLEXIBLE_JOB_SHOP : Format.PARALLEL_MACHINE;
+    }
+
+    public Instance read(Path file) throws IOException {
+        return read(file, formatOf(file));
+    }
+
+    public Instance read(Path file, Format format) throws IOException {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        String text = Files.readString(file).strip();
+        if (format == Format.PARALLEL_MACHINE) {
+            return readParallelMachine(name, new Tokens(text, file));
+        }
+        // The header line may end in the average number of machines per operation, which is not needed
+        int headerEnd = text.indexOf('\n');
+        Tokens header = new Tokens(headerEnd < 0 ? text : text.substring(0, headerEnd), file);
+        return readFlexibleJobShop(name, header, new Tokens(headerEnd < 0 ? "" : text.substring(headerEnd + 1), file));
+    }
+
+    private Instance readParallelMachine(String name, Tokens tokens) {
+        int numJobs = tokens.nextPositive("number of jobs");
+        int numMachines = tokens.nextPositive("number of machines");
+        int[] processingTimes = new int[numJobs];
+        for (int j = 0; j < numJobs; j++) {
+            processingTimes[j] = tokens.nextPositive("processing time of job " + j);
+        }
+
+        // Identical machines unless the file goes on with one factor per machine
+        int[] factors = new int[numMachines];
+        boolean uniform = tokens.hasNext();
+        for (int m = 0; m < numMachines; m++) {
+            factors[m] = uniform ? tokens.nextPositive("slowness factor of machine " + m) : 1;
+        }
+        tokens.expectEnd();
+
+        return build(name, uniform ? "uniform" : "identical", factors, processingTimes, false);
+    }
+
+    private Instance readFlexibleJobShop(String name, Tokens header, Tokens tokens) {
+        int numJobs = header.nextPositive("number of jobs");
+        int numMachines = header.nextPositive("number of machines");
+
+        List<Integer> operations = new ArrayList<>();
+        for (int j = 0; j < numJobs; j++) {
+            int numOperations = tokens.nextPositive("operations of job " + j);
+            for (int o = 0; o < numOperations; o++) {
+                int options = tokens.nextPositive("machines of job " + j + " operation " + o);
+                int shortest = Integer.MAX_VALUE;
+                for (int k = 0; k < options; k++) {
+                    int machine = tokens.nextPositive("machine of job " + j + " operation " + o);
+                    if (machine > numMachines) {
+                        throw new IllegalArgumentException(name + ": job " + j + " operation " + o + " uses machine " + machine
+                                + " of " + numMachines);
+                    }
+                    shortest = Math.min(shortest, tokens.nextPositive("time of job " + j + " operation " + o));
+                }
+                operations.add(shortest);
+            }
+        }
+        tokens.expectEnd();
+
+        int[] factors = new int[numMachines];
+        Arrays.fill(factors, 1);
+        return build(name, "fjsp-relaxed", factors, operations.stream().mapToInt(Integer::intValue).toArray(), true);
+    }
+
+    private Instance build(String name, String kind, int[] factors, int[] processingTimes, boolean relaxed) {
+        // One family per distinct processing time, longest first as the greedy wants them anyway
+        Map<Integer, Integer> quantities = new TreeMap<>((a, b) -> Integer.compare(b, a));
+        long work = 0;
+        int longest = 0;
+        for (int p : processingTimes) {
+            quantities.merge(p, 1, Integer::sum);
+            work += p;
+            longest = Math.max(longest, p);
+        }
+        List<JobFamily> families = new ArrayList<>(quantities.size());
+        for (Map.Entry<Integer, Integer> family : quantities.entrySet()) {
+            families.add(new JobFamily(new Job(family.getKey()), family.getValue()));
+        }
+
+        // All work on the slowest machine fits in the window, so the window never binds
+        int slowest = 1;
+        for (int factor : factors) {
+            slowest = Math.max(slowest, factor);
+        }
+        long horizon = work * slowest;
+        if (horizon > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException(name + ": total work " + horizon + " s does not fit the slot arithmetic");
+        }
+        if (shiftOn > 0 && (long) longest * slowest > shiftOn) {
+            throw new IllegalArgumentException(name + ": a job of " + longest + " units does not fit in a shift of " + shiftOn);
+        }
+
+        List<Machine> machines = new ArrayList<>(factors.length);
+        for (int m = 0; m < factors.length; m++) {
+            machines.add(new Machine(m + 1, factors[m], calendar(horizon, (long) longest * slowest, processingTimes.length)));
+        }
+        return new Instance(name, kind, machines, families, processingTimes.length, relaxed);
+    }
+
+    private Calendar calendar(long horizon, long longest, int numJobs) {
+        List<TimeSlot> slots = new ArrayList<>();
+        if (shiftOn <= 0) {
+            slots.add(new TimeSlot(referencePoint, referencePoint.plusSeconds(horizon)));
+        } else {
+            // A shift is only left once the next job does not fit, so it holds more than on - longest of work
+            // and at least one job: enough shifts for all work on one machine
+            long perShift = Math.max(shiftOn - longest + 1, 1);
+            long shifts = Math.min((horizon + perShift - 1) / perShift, numJobs) + 1;
+            if (shifts * (shiftOn + shiftOff) > Integer.MAX_VALUE / 2) {
+                throw new IllegalArgumentException(shifts + " shifts of " + (shiftOn + shiftOff) + " s do not fit the slot arithmetic");
+            }
+            for (long s = 0; s < shifts; s++) {
+                ZonedDateTime start = referencePoint.plusSeconds(s * (shiftOn + shiftOff));
+                slots.add(new TimeSlot(start, start.plusSeconds(shiftOn)));
+            }
+        }
+        return new Calendar(slots);
+    }
+
+    public ZonedDateTime getReferencePoint() {
+        return referencePoint;
+    }
+
+    public void setReferencePoint(ZonedDateTime referencePoint) {
+        this.referencePoint = referencePoint;
+    }
+
+    public int getShiftOn() {
+        return shiftOn;
+    }
+
+    public int getShiftOff() {
+        return shiftOff;
+    }
+
+    // Repeating windows of on units followed by off units, on 0 for one continuous window
+    public void setShift(int on, int off) {
+        if (on < 0 || off < 0) {
+            throw new IllegalArgumentException("Shift lengths must not be negative");
+        }
+        this.shiftOn = on;
+        this.shiftOff = off;
+    }
+
+    public static class Instance {
+
+        private final String name;
+        private final String kind;
+        private final List<Machine> machines;
+        private final List<JobFamily> families;
+        private final int numJobs;
+        private final boolean relaxed;
+
+        Instance(String name, String kind, List<Machine> machines, List<JobFamily> families, int numJobs, boolean relaxed) {
+            this.name = name;
+            this.kind = kind;
+            this.machines = machines;
+            this.families = families;
+            this.numJobs = numJobs;
+            this.relaxed = relaxed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // identical, uniform or fjsp-relaxed
+        public String getKind() {
+            return kind;
+        }
+
+        public List<Machine> getMachines() {
+            return machines;
+        }
+
+        public List<JobFamily> getFamilies() {
+            return families;
+        }
+
+        public int getNumJobs() {
+            return numJobs;
+        }
+
+        // True when the makespan is only a lower bound for the original problem
+        public boolean isRelaxed() {
+            return relaxed;
+        }
+    }
+
+    // Whitespace separated integers with the file in error messages
+    private static class Tokens {
+
+        private final String[] tokens;
+        private final Path file;
+        private int next;
+
+        Tokens(String text, Path file) {
+            String trimmed = text.strip();
+            this.tokens = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+            this.file = file;
+        }
+
+        boolean hasNext() {
+            return next < tokens.length;
+        }
+
+        String next() {
+            if (!hasNext()) {
+                throw new IllegalArgumentException(file + ": unexpected end of file");
+            }
+            return tokens[next++];
+        }
+
+        int nextPositive(String what) {
+            String token = next();
+            int value;
+            try {
+                value = Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(file + ": " + what + " is not an integer: " + token);
+            }
+            if (value <= 0) {
+                throw new IllegalArgumentException(file + ": " + what + " must be positive: " + token);
+            }
+            return value;
+        }
+
+        void expectEnd() {
+            if (hasNext()) {
+                throw new IllegalArgumentException(file + ": unexpected data after token " + next + ": " + tokens[next]);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package es.emi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Solves published benchmark instances with FamilyScheduling and compares them with the best known values:
+//   java -cp ... es.emi.BenchmarkRunner <file|directory ...> [--best file] [--time-limit s] [--workers n]
+//                                       [--shift on off] [--format PARALLEL_MACHINE|FLEXIBLE_JOB_SHOP]
+// The best known file holds one "instance value" pair per line, instance being the file name without its
+// extension, lines starting with # are skipped. Gap is (makespan - best) / best. Relaxed flexible job
+// shops are marked and compared by the solver's lower bound on the relaxation instead, which also bounds
+// the job shop, so their gap is expected to be negative; a makespan of the relaxation found under the time
+// limit bounds nothing. With --shift
+// the instances get shift calendars and the published values no longer apply.
+public class BenchmarkRunner {
+
+    private static final double DEFAULT_TIME_LIMIT_SECONDS = 60;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: BenchmarkRunner <file|directory ...> [--best file] [--time-limit s] [--workers n] "
+                    + "[--shift on off] [--format PARALLEL_MACHINE|FLEXIBLE_JOB_SHOP]");
+            return;
+        }
+
+        BenchmarkImporter importer = new BenchmarkImporter();
+        BenchmarkImporter.Format format = null;
+        Path bestFile = null;
+        double timeLimit = DEFAULT_TIME_LIMIT_SECONDS;
+        int workers = Runtime.getRuntime().availableProcessors();
+        List<Path> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--best" -> bestFile = Path.of(args[++i]);
+                case "--time-limit" -> timeLimit = Double.parseDouble(args[++i]);
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--shift" -> importer.setShift(Integer.parseInt(args[++i]), Integer.parseInt(args[++i]));
+                case "--format" -> format = BenchmarkImporter.Format.valueOf(args[++i]);
+                default -> inputs.add(Path.of(args[i]));
+            }
+        }
+
+        Map<String, Long> best = bestFile == null ? Map.of() : readBestKnown(bestFile);
+        List<Path> files = new ArrayList<>();
+        for (Path input : inputs) {
+            files.addAll(files(input));
+        }
+        // The best known file may sit next to the instances
+        if (bestFile != null) {
+            Path skipped = bestFile.toAbsolutePath().normalize();
+            files.removeIf(file -> file.toAbsolutePath().normalize().equals(skipped));
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No instances found in " + inputs);
+        }
+
+        NativeRuntime.warmUp();
+
+        System.out.printf("%-20s %-13s %6s %4s %9s %10s %10s %10s %8s %9s%n",
+                "instance", "kind", "jobs", "m", "status", "makespan", "bound", "best", "gap%", "time(s)");
+        int solved = 0;
+        int compared = 0;
+        double gapSum = 0;
+        double timeSum = 0;
+
+        for (Path file : files) {
+            BenchmarkImporter.Instance instance = format == null ? importer.read(file) : importer.read(file, format);
+
+            SolverConfig config = new SolverConfig();
+            config.setMaxTimeInSeconds(timeLimit);
+            config.setNumWorkers(workers);
+            config.setLogSearchProgress(false);
+
+            long startNanos = System.nanoTime();
+            ScheduleResult result = FamilyScheduling.solver(instance.getMachines(), instance.getFamilies(), config);
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            timeSum += seconds;
+
+            Long bestKnown = best.get(instance.getName());
+            String makespan = result.hasSolution() ? Long.toString(result.getMakespan()) : "-";
+            String bound = result.hasSolution() ? Long.toString(result.getLowerBound()) : "-";
+            String gap = "-";
+            if (result.hasSolution()) {
+                solved++;
+                if (bestKnown != null && importer.getShiftOn() == 0) {
+                    long value = instance.isRelaxed() ? result.getLowerBound() : result.getMakespan();
+                    double relative = 100.0 * (value - bestKnown) / bestKnown;
+                    gap = String.format("%.2f", relative);
+                    gapSum += relative;
+                    compared++;
+                }
+            }
+
+            System.out.printf("%-20s %-13s %6d %4d %9s %10s %10s %10s %8s %9.2f%s%n",
+                    instance.getName(), instance.getKind(), instance.getNumJobs(), instance.getMachines().size(),
+                    result.getStatus(), makespan, bound, bestKnown == null ? "-" : bestKnown, gap, seconds,
+                    instance.isRelaxed() ? "  (relaxed, gap from the lower bound)" : "");
+        }
+
+        System.out.printf("%d of %d solved, %.2f s total", solved, files.size(), timeSum);
+        if (compared > 0) {
+            System.out.printf(", mean gap %.2f%% over %d instances with a best known value", gapSum / compared, compared);
+        }
+        System.out.println();
+    }
+
+    public static Map<String, Long> readBestKnown(Path file) throws IOException {
+        Map<String, Long> best = new HashMap<>();
+        List<String> lines = Files.readAllLines(file);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 2) {
+                throw new IllegalArgumentException(file + ":" + (i + 1) + ": expected instance and value, got " + line);
+            }
+            best.put(fields[0], Long.parseLong(fields[1]));
+        }
+        return best;
+    }
+
+    private static List<Path> files(Path input) throws IOException {
+        if (!Files.isDirectory(input)) {
+            return List.of(input);
+        }
+        try (Stream<Path> files = Files.list(input)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package es.emi;
+
+import com.google.ortools.sat.CpSolverStatus;
+
+import java.nio.ByteBuffer;
+
+// Big-endian layout:
+//   int magic, short version, short status, long reference epoch second, double wall time, int machines
+//   per machine: int tasks, then tasks x (int piece, int start, int end) in seconds from the reference
+public class BinaryScheduleExporter extends BufferedScheduleExporter {
+
+    public static final int MAGIC = 0x53434852; // "SCHR"
+    public static final short VERSION = 1;
+
+    @Override
+    protected void writeHeader(ScheduleResult result, ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) result.getStatus().getNumber());
+        buffer.putLong(result.getReferenceEpochSecond());
+        buffer.putDouble(result.getWallTime());
+        buffer.putInt(result.getNumMachines());
+    }
+
+    @Override
+    protected void writeMachine(ScheduleResult result, int machine, ByteBuffer buffer) {
+        buffer.putInt(result.getTaskCount(machine));
+    }
+
+    @Override
+    protected void writeTask(ScheduleResult result, int machine, int task, ByteBuffer buffer) {
+        buffer.putInt(result.getPieces(machine)[task]);
+        buffer.putInt((int) result.getStarts(machine)[task]);
+        buffer.putInt((int) result.getEnds(machine)[task]);
+    }
+
+    // Reads a schedule written by this exporter, the buffer is left after its last task
+    public static ScheduleResult read(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a binary schedule");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary schedule version " + version);
+        }
+
+        CpSolverStatus status = CpSolverStatus.forNumber(buffer.getShort());
+        long reference = buffer.getLong();
+        double wallTime = buffer.getDouble();
+        int numMachines = buffer.getInt();
+
+        ScheduleResult.Builder builder = new ScheduleResult.Builder(numMachines);
+        for (int m = 0; m < numMachines; m++) {
+            int tasks = buffer.getInt();
+            for (int k = 0; k < tasks; k++) {
+                builder.addTask(m, buffer.getInt(), buffer.getInt(), buffer.getInt());
+            }
+        }
+
+        return builder.build(status, reference, wallTime);
+    }
+}
@@ -0,0 +1,86 @@
+package es.emi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+public abstract class BufferedScheduleExporter implements ScheduleExporter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Upper bound for one header, machine, task or footer record
+    private static final int MAX_RECORD_SIZE = 512;
+
+    @Override
+    public void export(ScheduleResult result, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        writeHeader(result, buffer);
+
+        for (int m = 0; m < result.getNumMachines(); m++) {
+            if (buffer.remaining() < MAX_RECORD_SIZE) {
+                drain(buffer, channel);
+            }
+            writeMachine(result, m, buffer);
+
+            for (int k = 0; k < result.getTaskCount(m); k++) {
+                if (buffer.remaining() < MAX_RECORD_SIZE) {
+                    drain(buffer, channel);
+                }
+                writeTask(result, m, k, buffer);
+            }
+        }
+
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            drain(buffer, channel);
+        }
+        writeFooter(result, buffer);
+        drain(buffer, channel);
+    }
+
+    protected abstract void writeHeader(ScheduleResult result, ByteBuffer buffer);
+
+    protected void writeMachine(ScheduleResult result, int machine, ByteBuffer buffer) {
+    }
+
+    protected abstract void writeTask(ScheduleResult result, int machine, int task, ByteBuffer buffer);
+
+    protected void writeFooter(ScheduleResult result, ByteBuffer buffer) {
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    protected static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Decimal digits straight into the buffer, no intermediate String
+    protected static void putDecimal(ByteBuffer buffer, long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                buffer.put(ascii("9223372036854775808"));
+                return;
+            }
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+
+        int position = buffer.position();
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer.put(position + i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(position + digits);
+    }
+}
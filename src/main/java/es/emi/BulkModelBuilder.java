@@ -0,0 +1,165 @@
+package es.emi;
+
+import com.google.ortools.sat.BoolArgumentProto;
+import com.google.ortools.sat.ConstraintProto;
+import com.google.ortools.sat.CpModel;
+import com.google.ortools.sat.CpModelProto;
+import com.google.ortools.sat.IntegerVariableProto;
+import com.google.ortools.sat.IntervalConstraintProto;
+import com.google.ortools.sat.LinearArgumentProto;
+import com.google.ortools.sat.LinearConstraintProto;
+import com.google.ortools.sat.LinearExpressionProto;
+import com.google.ortools.sat.NoOverlapConstraintProto;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Writes variables and constraints straight into the CpModelProto of a CpModel, addressed by proto
+// index, without IntVar/BoolVar/LinearExpr wrappers. Variable names are never written to the proto;
+// in debug mode they are kept in a side table instead.
+public class BulkModelBuilder {
+
+    private final CpModelProto.Builder proto;
+    private String[] names;
+
+    public BulkModelBuilder(CpModel model, boolean debugNames) {
+        this.proto = model.getBuilder();
+        this.names = debugNames ? new String[64] : null;
+    }
+
+    public static int not(int literal) {
+        return -literal - 1;
+    }
+
+    public boolean isDebug() {
+        return names != null;
+    }
+
+    public int getNumVariables() {
+        return proto.getVariablesCount();
+    }
+
+    // Contiguous block of variables sharing a domain, returns the index of the first one
+    public int newVariables(int count, long lb, long ub) {
+        int first = proto.getVariablesCount();
+        IntegerVariableProto variable = IntegerVariableProto.newBuilder().addDomain(lb).addDomain(ub).build();
+        for (int k = 0; k < count; k++) {
+            proto.addVariables(variable);
+        }
+        return first;
+    }
+
+    public int newVariable(long lb, long ub) {
+        return newVariables(1, lb, ub);
+    }
+
+    // Only builds the name when debugging
+    public void name(int variable, String prefix, int a, int b) {
+        if (names == null) {
+            return;
+        }
+        if (variable >= names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, variable + 1));
+        }
+        names[variable] = prefix + a + "_" + b;
+    }
+
+    public String getName(int variable) {
+        return names == null || variable >= names.length || names[variable] == null ? "v" + variable : names[variable];
+    }
+
+    // Optional interval [start, end) of fixed size, returns its constraint index
+    public int addOptionalInterval(int start, int end, long size, int presence) {
+        int index = proto.getConstraintsCount();
+        proto.addConstraints(ConstraintProto.newBuilder()
+                .addEnforcementLiteral(presence)
+                .setInterval(IntervalConstraintProto.newBuilder()
+                        .setStart(term(start))
+                        .setEnd(term(end))
+                        .setSize(LinearExpressionProto.newBuilder().setOffset(size))));
+        // The interval alone does not link its bounds, CpModel adds the same constraint
+        proto.addConstraints(ConstraintProto.newBuilder()
+                .addEnforcementLiteral(presence)
+                .setLinear(LinearConstraintProto.newBuilder().addVars(end).addCoeffs(1).addVars(start).addCoeffs(-1)
+                        .addDomain(size).addDomain(size)));
+        return index;
+    }
+
+    // lb <= variable <= ub when the literal holds
+    public void addBounds(int variable, long lb, long ub, int enforcement) {
+        proto.addConstraints(ConstraintProto.newBuilder()
+                .addEnforcementLiteral(enforcement)
+                .setLinear(LinearConstraintProto.newBuilder().addVars(variable).addCoeffs(1).addDomain(lb).addDomain(ub)));
+    }
+
+    // lb <= sum(coeffs * variables) <= ub
+    public void addLinear(int[] variables, long[] coeffs, long lb, long ub) {
+        LinearConstraintProto.Builder linear = LinearConstraintProto.newBuilder();
+        for (int k = 0; k < variables.length; k++) {
+            linear.addVars(variables[k]).addCoeffs(coeffs[k]);
+        }
+        proto.addConstraints(ConstraintProto.newBuilder().setLinear(linear.addDomain(lb).addDomain(ub)));
+    }
+
+    // lb <= sum(coeffs * variables) <= ub when the literal holds
+    public void addLinear(int[] variables, long[] coeffs, long lb, long ub, int enforcement) {
+        LinearConstraintProto.Builder linear = LinearConstraintProto.newBuilder();
+        for (int k = 0; k < variables.length; k++) {
+            linear.addVars(variables[k]).addCoeffs(coeffs[k]);
+        }
+        proto.addConstraints(ConstraintProto.newBuilder().addEnforcementLiteral(enforcement).setLinear(linear.addDomain(lb).addDomain(ub)));
+    }
+
+    public void addExactlyOne(int[] literals) {
+        BoolArgumentProto.Builder exactlyOne = BoolArgumentProto.newBuilder();
+        for (int literal : literals) {
+            exactlyOne.addLiterals(literal);
+        }
+        proto.addConstraints(ConstraintProto.newBuilder().setExactlyOne(exactlyOne));
+    }
+
+    public void addNoOverlap(int[] intervals) {
+        NoOverlapConstraintProto.Builder noOverlap = NoOverlapConstraintProto.newBuilder();
+        for (int interval : intervals) {
+            noOverlap.addIntervals(interval);
+        }
+        proto.addConstraints(ConstraintProto.newBuilder().setNoOverlap(noOverlap));
+    }
+
+    // target == max(variables)
+    public void addMaxEquality(int target, int[] variables) {
+        LinearArgumentProto.Builder max = LinearArgumentProto.newBuilder().setTarget(term(target));
+        for (int variable : variables) {
+            max.addExprs(term(variable));
+        }
+        proto.addConstraints(ConstraintProto.newBuilder().setLinMax(max));
+    }
+
+    public void minimize(int variable) {
+        proto.getObjectiveBuilder().clear().addVars(variable).addCoeffs(1);
+    }
+
+    // minimize sum(coeffs * variables)
+    public void minimize(int[] variables, long[] coeffs) {
+        proto.getObjectiveBuilder().clear();
+        for (int k = 0; k < variables.length; k++) {
+            proto.getObjectiveBuilder().addVars(variables[k]).addCoeffs(coeffs[k]);
+        }
+    }
+
+    public void addHint(int variable, long value) {
+        proto.getSolutionHintBuilder().addVars(variable).addValues(value);
+    }
+
+    // Replaces the hint with a complete assignment, e.g. the previous solve's solution
+    public void hintAll(List<Long> values) {
+        proto.getSolutionHintBuilder().clear();
+        for (int variable = 0; variable < values.size(); variable++) {
+            proto.getSolutionHintBuilder().addVars(variable).addValues(values.get(variable));
+        }
+    }
+
+    private static LinearExpressionProto.Builder term(int variable) {
+        return LinearExpressionProto.newBuilder().addVars(variable).addCoeffs(1);
+    }
+}
@@ -0,0 +1,307 @@
+package es.emi;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Streams plant exports straight from memory-mapped files:
+//   machines file: id,speed
+//   slots file:    machine,start,end  with epoch seconds or ISO instants (2024-08-07T00:30:00Z, 2024-08-07T02:30:00+02:00)
+// A header line is skipped when its first character is not a digit
+public class CalendarCsvLoader {
+
+    // Files larger than this are mapped window by window
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    private final Map<Integer, Integer> machineIndex = new HashMap<>();
+    private final List<Integer> machineIds = new ArrayList<>();
+    private final List<Integer> machineSpeeds = new ArrayList<>();
+    private long[][] starts = new long[0][];
+    private long[][] ends = new long[0][];
+    private int[] counts = new int[0];
+
+    private int lastMachineId = Integer.MIN_VALUE;
+    private int lastMachine = -1;
+
+    // Position of the current field inside the mapped window
+    private int cursor;
+    private long lineNumber;
+
+    public static List<Machine> load(Path machinesFile, Path slotsFile) throws IOException {
+        CalendarCsvLoader loader = new CalendarCsvLoader();
+        loader.readMachines(machinesFile);
+        loader.readSlots(slotsFile);
+        return loader.toMachines();
+    }
+
+    private void readMachines(Path machinesFile) throws IOException {
+        forEachLine(machinesFile, (buffer, end) -> {
+            int id = (int) parseLong(buffer, end);
+            expect(buffer, end, ',');
+            int speed = (int) parseLong(buffer, end);
+            expectEnd(buffer, end);
+
+            if (machineIndex.putIfAbsent(id, machineIds.size()) != null) {
+                throw new IllegalArgumentException("Duplicated machine " + id + " at line " + lineNumber);
+            }
+            machineIds.add(id);
+            machineSpeeds.add(speed);
+        });
+
+        int numMachines = machineIds.size();
+        starts = new long[numMachines][16];
+        ends = new long[numMachines][16];
+        counts = new int[numMachines];
+    }
+
+    private void readSlots(Path slotsFile) throws IOException {
+        forEachLine(slotsFile, (buffer, end) -> {
+            int machine = machine((int) parseLong(buffer, end));
+            expect(buffer, end, ',');
+            long start = parseTime(buffer, end);
+            expect(buffer, end, ',');
+            long finish = parseTime(buffer, end);
+            expectEnd(buffer, end);
+
+            if (finish <= start) {
+                throw new IllegalArgumentException("Empty slot at line " + lineNumber);
+            }
+            addSlot(machine, start, finish);
+        });
+    }
+
+    private int machine(int id) {
+        // Exports are usually grouped by machine, skip the map lookup for consecutive lines
+        if (id != lastMachineId) {
+            Integer index = machineIndex.get(id);
+            if (index == null) {
+                throw new IllegalArgumentException("Unknown machine " + id + " at line " + lineNumber);
+            }
+            lastMachineId = id;
+            lastMachine = index;
+        }
+        return lastMachine;
+    }
+
+    // Keeps each calendar sorted, appending in the common case and rejecting overlaps on the way
+    private void addSlot(int machine, long start, long end) {
+        int count = counts[machine];
+        long[] machineStarts = starts[machine];
+        long[] machineEnds = ends[machine];
+
+        if (count == machineStarts.length) {
+            machineStarts = starts[machine] = Arrays.copyOf(machineStarts, count * 2);
+            machineEnds = ends[machine] = Arrays.copyOf(machineEnds, count * 2);
+        }
+
+        int position = count;
+        if (count > 0 && start < machineEnds[count - 1]) {
+            position = Arrays.binarySearch(machineStarts, 0, count, start);
+            position = position < 0 ? -position - 1 : position;
+        }
+
+        if ((position > 0 && machineEnds[position - 1] > start) || (position < count && machineStarts[position] < end)) {
+            throw new IllegalArgumentException("Overlapping slot on machine " + machineIds.get(machine) + " at line " + lineNumber);
+        }
+
+        System.arraycopy(machineStarts, position, machineStarts, position + 1, count - position);
+        System.arraycopy(machineEnds, position, machineEnds, position + 1, count - position);
+        machineStarts[position] = start;
+        machineEnds[position] = end;
+        counts[machine] = count + 1;
+    }
+
+    private List<Machine> toMachines() {
+        List<Machine> machines = new ArrayList<>(machineIds.size());
+
+        for (int m = 0; m < machineIds.size(); m++) {
+            List<TimeSlot> slots = new ArrayList<>(counts[m]);
+            for (int j = 0; j < counts[m]; j++) {
+                slots.add(new TimeSlot(toDateTime(starts[m][j]), toDateTime(ends[m][j])));
+            }
+            machines.add(new Machine(machineIds.get(m), machineSpeeds.get(m), new Calendar(slots)));
+        }
+
+        return machines;
+    }
+
+    private static ZonedDateTime toDateTime(long epochSecond) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+    }
+
+    private interface LineParser {
+        void parse(MappedByteBuffer buffer, int end);
+    }
+
+    private void forEachLine(Path file, LineParser parser) throws IOException {
+        lineNumber = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+
+            while (offset < size) {
+                long length = Math.min(WINDOW_SIZE, size - offset);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                boolean lastWindow = offset + length == size;
+
+                int lineStart = 0;
+                int limit = (int) length;
+                while (lineStart < limit) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                        lineEnd++;
+                    }
+                    if (lineEnd == limit && !lastWindow) {
+                        // Incomplete line, the next window starts with it
+                        break;
+                    }
+
+                    lineNumber++;
+                    int contentEnd = lineEnd;
+                    while (contentEnd > lineStart && (buffer.get(contentEnd - 1) == '\r' || buffer.get(contentEnd - 1) == ' ')) {
+                        contentEnd--;
+                    }
+
+                    byte first = contentEnd > lineStart ? buffer.get(lineStart) : (byte) '#';
+                    boolean data = (first >= '0' && first <= '9') || first == '-';
+                    if (data) {
+                        cursor = lineStart;
+                        parser.parse(buffer, contentEnd);
+                    } else if (lineNumber > 1 && contentEnd > lineStart && first != '#') {
+                        throw new IllegalArgumentException("Malformed line " + lineNumber + " in " + file);
+                    }
+
+                    lineStart = lineEnd + 1;
+                }
+
+                if (lineStart == 0 && !lastWindow) {
+                    throw new IllegalArgumentException("Line longer than the mapping window in " + file);
+                }
+                offset += lineStart;
+            }
+        }
+    }
+
+    private void expect(MappedByteBuffer buffer, int end, char separator) {
+        skipSpaces(buffer, end);
+        if (cursor >= end || buffer.get(cursor) != separator) {
+            throw new IllegalArgumentException("Expected '" + separator + "' at line " + lineNumber);
+        }
+        cursor++;
+    }
+
+    private void expectEnd(MappedByteBuffer buffer, int end) {
+        skipSpaces(buffer, end);
+        if (cursor != end) {
+            throw new IllegalArgumentException("Unexpected trailing data at line " + lineNumber);
+        }
+    }
+
+    private void skipSpaces(MappedByteBuffer buffer, int end) {
+        while (cursor < end && buffer.get(cursor) == ' ') {
+            cursor++;
+        }
+    }
+
+    private long parseLong(MappedByteBuffer buffer, int end) {
+        skipSpaces(buffer, end);
+
+        boolean negative = cursor < end && buffer.get(cursor) == '-';
+        if (negative) {
+            cursor++;
+        }
+
+        int digitsStart = cursor;
+        long value = 0;
+        while (cursor < end) {
+            byte b = buffer.get(cursor);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            cursor++;
+        }
+
+        if (cursor == digitsStart) {
+            throw new IllegalArgumentException("Expected a number at line " + lineNumber);
+        }
+        return negative ? -value : value;
+    }
+
+    // Epoch seconds, or an ISO instant with Z or a numeric offset
+    private long parseTime(MappedByteBuffer buffer, int end) {
+        skipSpaces(buffer, end);
+
+        int fieldStart = cursor;
+        long first = parseLong(buffer, end);
+        if (cursor >= end || buffer.get(cursor) != '-' || cursor - fieldStart != 4) {
+            return first;
+        }
+
+        int month = fixedDigits(buffer, end, '-', 2);
+        int day = fixedDigits(buffer, end, '-', 2);
+        int hour = fixedDigits(buffer, end, 'T', 2);
+        int minute = fixedDigits(buffer, end, ':', 2);
+        int second = fixedDigits(buffer, end, ':', 2);
+
+        // Fractions of a second are dropped
+        if (cursor < end && buffer.get(cursor) == '.') {
+            cursor++;
+            while (cursor < end && buffer.get(cursor) >= '0' && buffer.get(cursor) <= '9') {
+                cursor++;
+            }
+        }
+
+        long offsetSeconds = 0;
+        if (cursor < end && buffer.get(cursor) == 'Z') {
+            cursor++;
+        } else if (cursor < end && (buffer.get(cursor) == '+' || buffer.get(cursor) == '-')) {
+            int sign = buffer.get(cursor) == '-' ? -1 : 1;
+            int offsetHours = fixedDigits(buffer, end, buffer.get(cursor), 2);
+            int offsetMinutes = fixedDigits(buffer, end, ':', 2);
+            offsetSeconds = sign * (offsetHours * 3600L + offsetMinutes * 60L);
+        } else {
+            throw new IllegalArgumentException("Missing time zone at line " + lineNumber);
+        }
+
+        return epochDay(first, month, day) * 86400L + hour * 3600L + minute * 60L + second - offsetSeconds;
+    }
+
+    private int fixedDigits(MappedByteBuffer buffer, int end, int separator, int digits) {
+        if (cursor + 1 + digits > end || buffer.get(cursor) != separator) {
+            throw new IllegalArgumentException("Malformed timestamp at line " + lineNumber);
+        }
+        cursor++;
+
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            byte b = buffer.get(cursor++);
+            if (b < '0' || b > '9') {
+                throw new IllegalArgumentException("Malformed timestamp at line " + lineNumber);
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    static long epochDay(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,185 @@
+package es.emi;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+// O(M*S) capacity count run before any model is built. Pieces are identical per machine, so a machine
+// holds exactly floor(slot / cycleTime) pieces per slot and the check is exact: when the total is below
+// numPieces no engine can find a schedule, and the report says where the capacity went.
+public final class CapacityCheck {
+
+    private final int numPieces;
+    private final boolean resumable;
+    private final int[] cycleTimes;
+    private final int[] slots;
+    // Slots shorter than the cycle time, dropped by preprocessIntervals
+    private final int[] droppedSlots;
+    private final long[] droppedSeconds;
+    // Productive time before the reference point or after maxEnd
+    private final long[] outsideSeconds;
+    // Usable time that is not a multiple of the cycle time
+    private final long[] leftoverSeconds;
+    private final long[] capacity;
+
+    private CapacityCheck(int numPieces, boolean resumable, int[] cycleTimes, int numMachines) {
+        this.numPieces = numPieces;
+        this.resumable = resumable;
+        this.cycleTimes = cycleTimes;
+        this.slots = new int[numMachines];
+        this.droppedSlots = new int[numMachines];
+        this.droppedSeconds = new long[numMachines];
+        this.outsideSeconds = new long[numMachines];
+        this.leftoverSeconds = new long[numMachines];
+        this.capacity = new long[numMachines];
+    }
+
+    // Every piece has to fit in a single slot within [referencePoint, referencePoint + maxEnd]
+    public static CapacityCheck forSlots(int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                         ZonedDateTime referencePoint, long maxEnd) {
+        return count(numPieces, cycleTimes, productiveIntervals, referencePoint, maxEnd, false);
+    }
+
+    // Pieces may pause over breaks, only the total productive time per machine counts
+    public static CapacityCheck forResumable(int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                             ZonedDateTime referencePoint, long maxEnd) {
+        return count(numPieces, cycleTimes, productiveIntervals, referencePoint, maxEnd, true);
+    }
+
+    private static CapacityCheck count(int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                       ZonedDateTime referencePoint, long maxEnd, boolean resumable) {
+        // Extra cycle times are allowed, as in SchedulingInstance, the calendars decide the machines
+        if (cycleTimes.length < productiveIntervals.length) {
+            throw new IllegalArgumentException("Expected a cycle time for each of " + productiveIntervals.length
+                    + " calendars, got " + cycleTimes.length);
+        }
+
+        CapacityCheck check = new CapacityCheck(numPieces, resumable, cycleTimes, productiveIntervals.length);
+        for (int m = 0; m < productiveIntervals.length; m++) {
+            int cycleTime = cycleTimes[m];
+            if (cycleTime <= 0) {
+                throw new IllegalArgumentException("Cycle time must be positive on machine " + m + ": " + cycleTime);
+            }
+
+            long productive = 0;
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                long start = ChronoUnit.SECONDS.between(referencePoint, interval[0]);
+                long end = ChronoUnit.SECONDS.between(referencePoint, interval[1]);
+                check.slots[m]++;
+
+                if (!resumable && end - start < cycleTime) {
+                    check.droppedSlots[m]++;
+                    check.droppedSeconds[m] += Math.max(end - start, 0);
+                    continue;
+                }
+
+                long usableStart = Math.max(start, 0);
+                long usableEnd = Math.min(end, maxEnd);
+                long usable = Math.max(usableEnd - usableStart, 0);
+                check.outsideSeconds[m] += Math.max(end - start, 0) - usable;
+
+                if (resumable) {
+                    productive += usable;
+                } else {
+                    check.capacity[m] += usable / cycleTime;
+                    check.leftoverSeconds[m] += usable % cycleTime;
+                }
+            }
+
+            if (resumable) {
+                check.capacity[m] = productive / cycleTime;
+                check.leftoverSeconds[m] = productive % cycleTime;
+            }
+        }
+        return check;
+    }
+
+    public boolean isFeasible() {
+        return getTotalCapacity() >= numPieces;
+    }
+
+    public long getTotalCapacity() {
+        long total = 0;
+        for (long machineCapacity : capacity) {
+            total += machineCapacity;
+        }
+        return total;
+    }
+
+    // Pieces that do not fit anywhere, 0 when feasible
+    public long getShortfall() {
+        return Math.max(numPieces - getTotalCapacity(), 0);
+    }
+
+    public int getNumPieces() {
+        return numPieces;
+    }
+
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    public int getNumMachines() {
+        return capacity.length;
+    }
+
+    public long getCapacity(int machine) {
+        return capacity[machine];
+    }
+
+    public int getSlots(int machine) {
+        return slots[machine];
+    }
+
+    public int getDroppedSlots(int machine) {
+        return droppedSlots[machine];
+    }
+
+    public long getDroppedSeconds(int machine) {
+        return droppedSeconds[machine];
+    }
+
+    public long getOutsideSeconds(int machine) {
+        return outsideSeconds[machine];
+    }
+
+    public long getLeftoverSeconds(int machine) {
+        return leftoverSeconds[machine];
+    }
+
+    // Pieces the machine loses to slot fragmentation: what the dropped and leftover time would hold
+    // as one continuous block
+    public long getLostPieces(int machine) {
+        return (droppedSeconds[machine] + leftoverSeconds[machine]) / cycleTimes[machine];
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Capacity ").append(getTotalCapacity()).append(" of ").append(numPieces).append(" pieces");
+        if (!isFeasible()) {
+            report.append(", short by ").append(getShortfall());
+        }
+        report.append('\n');
+
+        for (int m = 0; m < capacity.length; m++) {
+            report.append("machine ").append(m)
+                    .append(": cycle ").append(cycleTimes[m]).append(" s")
+                    .append(", capacity ").append(capacity[m])
+                    .append(", ").append(slots[m]).append(" slots");
+            if (droppedSlots[m] > 0) {
+                report.append(", ").append(droppedSlots[m]).append(" shorter than the cycle time (")
+                        .append(droppedSeconds[m]).append(" s)");
+            }
+            if (outsideSeconds[m] > 0) {
+                report.append(", ").append(outsideSeconds[m]).append(" s outside the horizon");
+            }
+            if (leftoverSeconds[m] > 0) {
+                report.append(", ").append(leftoverSeconds[m]).append(" s left over");
+            }
+            if (getLostPieces(m) > 0) {
+                report.append(", fragmentation costs ").append(getLostPieces(m)).append(" pieces");
+            }
+            report.append('\n');
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package es.emi;
+
+import java.util.Arrays;
+
+// Setup time in seconds lost on one machine when it switches from one job family to another, indexed like
+// the family list of the order. Staying on the same family costs nothing, the diagonal is ignored.
+public class ChangeoverMatrix {
+
+    private final int[][] times;
+
+    public ChangeoverMatrix(int[][] times) {
+        for (int from = 0; from < times.length; from++) {
+            if (times[from].length != times.length) {
+                throw new IllegalArgumentException("Changeover matrix must be square, row " + from + " has "
+                        + times[from].length + " entries for " + times.length + " families");
+            }
+            for (int to = 0; to < times.length; to++) {
+                if (times[from][to] < 0) {
+                    throw new IllegalArgumentException("Negative changeover from family " + from + " to family " + to);
+                }
+            }
+        }
+        this.times = times;
+    }
+
+    public static ChangeoverMatrix none(int numFamilies) {
+        return new ChangeoverMatrix(new int[numFamilies][numFamilies]);
+    }
+
+    public static ChangeoverMatrix uniform(int numFamilies, int seconds) {
+        int[][] times = new int[numFamilies][numFamilies];
+        for (int[] row : times) {
+            Arrays.fill(row, seconds);
+        }
+        return new ChangeoverMatrix(times);
+    }
+
+    public int getNumFamilies() {
+        return times.length;
+    }
+
+    public int getTime(int from, int to) {
+        return from == to ? 0 : times[from][to];
+    }
+
+    // Longest changeover into a family, 0 when it never costs anything
+    public int getMaxTimeInto(int to) {
+        int max = 0;
+        for (int from = 0; from < times.length; from++) {
+            max = Math.max(max, getTime(from, to));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,530 @@
+package es.emi;
+
+import com.google.ortools.sat.*;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// Job families with sequence-dependent changeovers. Each machine runs every family in at most one batch and
+// a circuit over the families orders the batches, so the model grows with machines x (families^2 + slots x
+// families) and not with pieces or piece pairs. As in FamilyScheduling each slot holds a count per family;
+// a batch covers a range of consecutive slots, the next batch starts in the slot where the previous one
+// ends or later, and the changeover into a batch is productive time taken from the slot it starts in.
+// The machine starts set up for its first batch. Pieces of family f get the ids [offset_f, offset_f +
+// quantity_f) in family order, machines without a matrix change over for free.
+public class ChangeoverScheduling {
+
+    public static ScheduleResult solver(List<Machine> machines, List<JobFamily> families, Map<Integer, ChangeoverMatrix> changeovers) {
+        ScheduleResult result = solver(machines, families, changeovers, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    public static ScheduleResult solver(List<Machine> machines, List<JobFamily> families, Map<Integer, ChangeoverMatrix> changeovers,
+                                        SolverConfig config) {
+        NativeRuntime.load();
+
+        int numMachines = machines.size();
+        int numFamilies = families.size();
+
+        // Convert calendars to seconds from the earliest slot start, batches need the slots in time order
+        ZonedDateTime referencePoint = findEarliestStart(machines);
+        int[][][] productiveIntervalsInSeconds = preprocessIntervals(machines, referencePoint);
+        int[][] processingTimes = processingTimes(machines, families);
+        ChangeoverMatrix[] matrices = matrices(machines, numFamilies, changeovers);
+
+        // Greedy list schedule: upper bound for the makespan and a complete hint
+        Greedy greedy = greedySchedule(productiveIntervalsInSeconds, processingTimes, matrices, families);
+        long upperBound = greedy != null ? greedy.makespan : findLatestEnd(productiveIntervalsInSeconds);
+
+        // Initialize model
+        CpModel model = new CpModel();
+        IntVar makespan = model.newIntVar(0, upperBound, "makespan");
+        MachineModel[] machineModels = new MachineModel[numMachines];
+        List<List<IntVar>> familyCounts = new ArrayList<>(numFamilies);
+        for (int f = 0; f < numFamilies; f++) {
+            familyCounts.add(new ArrayList<>());
+        }
+
+        for (int m = 0; m < numMachines; m++) {
+            machineModels[m] = new MachineModel(model, m, productiveIntervalsInSeconds[m], processingTimes[m], matrices[m],
+                    families, upperBound, makespan);
+            for (int f = 0; f < numFamilies; f++) {
+                familyCounts.get(f).addAll(machineModels[m].familyCounts(f));
+            }
+            if (greedy != null) {
+                machineModels[m].hint(model, greedy);
+            }
+        }
+
+        // Every family is produced in full
+        for (int f = 0; f < numFamilies; f++) {
+            model.addEquality(LinearExpr.sum(familyCounts.get(f).toArray(new IntVar[0])), families.get(f).getQuantity());
+        }
+
+        if (greedy != null) {
+            model.addHint(makespan, upperBound);
+        }
+        model.minimize(makespan);
+
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = config.solve(solver, model);
+
+        ScheduleResult.Builder builder = new ScheduleResult.Builder(numMachines);
+        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
+            int[] nextPiece = new int[numFamilies];
+            for (int f = 1; f < numFamilies; f++) {
+                nextPiece[f] = nextPiece[f - 1] + families.get(f - 1).getQuantity();
+            }
+            for (int m = 0; m < numMachines; m++) {
+                machineModels[m].decode(solver, builder, nextPiece);
+            }
+            // The objective is the makespan
+            builder.setLowerBound((long) Math.ceil(solver.bestObjectiveBound()));
+        }
+
+        return builder.build(status, referencePoint.toEpochSecond(), solver.wallTime());
+    }
+
+    // Batches of one machine. Node 0 of the circuit is the machine being idle, node f + 1 is the batch of family f
+    private static class MachineModel {
+
+        private final int machine;
+        private final int[][] slots;
+        private final int[] processingTimes;
+        private final ChangeoverMatrix matrix;
+        private final int numFamilies;
+
+        // Per slot and family, null where no piece of the family fits
+        private final IntVar[][] counts;
+        private final BoolVar[][] inBatch;
+        private final BoolVar[][] begins;
+        private final IntVar[][] charges;
+        private final BoolVar[] used;
+        // Per family, unused when the family never fits on the machine
+        private final BoolVar[] present;
+        private final IntVar[] firstSlot;
+        private final IntVar[] lastSlot;
+        // arcs[from + 1][to + 1], row and column 0 are the idle node
+        private final BoolVar[][] arcs;
+        private final BoolVar idle;
+
+        MachineModel(CpModel model, int m, int[][] productiveIntervals, int[] processingTimes, ChangeoverMatrix matrix,
+                     List<JobFamily> families, long upperBound, IntVar makespan) {
+            // A used slot ends its last piece before the makespan, later slots can never be used
+            int numSlots = 0;
+            while (numSlots < productiveIntervals.length && productiveIntervals[numSlots][0] < upperBound) {
+                numSlots++;
+            }
+            this.machine = m;
+            this.slots = Arrays.copyOf(productiveIntervals, numSlots);
+            this.processingTimes = processingTimes;
+            this.matrix = matrix;
+            this.numFamilies = families.size();
+
+            counts = new IntVar[numSlots][numFamilies];
+            inBatch = new BoolVar[numSlots][numFamilies];
+            begins = new BoolVar[numSlots][numFamilies];
+            charges = new IntVar[numSlots][numFamilies];
+            used = new BoolVar[numSlots];
+            present = new BoolVar[numFamilies];
+            firstSlot = new IntVar[numFamilies];
+            lastSlot = new IntVar[numFamilies];
+            arcs = new BoolVar[numFamilies + 1][numFamilies + 1];
+
+            int lastIndex = Math.max(numSlots - 1, 0);
+            String prefix = "machine_" + m + "_";
+            for (int f = 0; f < numFamilies; f++) {
+                List<IntVar> batchCounts = new ArrayList<>();
+                for (int j = 0; j < numSlots; j++) {
+                    int maxCount = Math.min((slots[j][1] - slots[j][0]) / processingTimes[f], families.get(f).getQuantity());
+                    if (maxCount == 0) {
+                        continue;
+                    }
+                    counts[j][f] = model.newIntVar(0, maxCount, prefix + "count_slot_" + j + "_family_" + f);
+                    inBatch[j][f] = model.newBoolVar(prefix + "batch_slot_" + j + "_family_" + f);
+                    model.addLessOrEqual(LinearExpr.newBuilder().add(counts[j][f]).addTerm(inBatch[j][f], -maxCount), 0);
+                    batchCounts.add(counts[j][f]);
+                }
+                if (batchCounts.isEmpty()) {
+                    continue;
+                }
+
+                present[f] = model.newBoolVar(prefix + "present_family_" + f);
+                firstSlot[f] = model.newIntVar(0, lastIndex, prefix + "first_slot_family_" + f);
+                lastSlot[f] = model.newIntVar(0, lastIndex, prefix + "last_slot_family_" + f);
+                model.addLessOrEqual(firstSlot[f], lastSlot[f]);
+
+                // The batch exists exactly when the machine runs some piece of the family
+                LinearExpr batchSize = LinearExpr.sum(batchCounts.toArray(new IntVar[0]));
+                model.addGreaterOrEqual(batchSize, 1).onlyEnforceIf(present[f]);
+                model.addEquality(batchSize, 0).onlyEnforceIf(present[f].not());
+
+                // Pieces of the batch stay between its first and its last slot
+                for (int j = 0; j < numSlots; j++) {
+                    if (inBatch[j][f] != null) {
+                        model.addLessOrEqual(firstSlot[f], j).onlyEnforceIf(inBatch[j][f]);
+                        model.addGreaterOrEqual(lastSlot[f], j).onlyEnforceIf(inBatch[j][f]);
+                    }
+                }
+
+                // The changeover is charged to the first slot, which may also be a slot before the first piece
+                LinearExprBuilder firstIndex = LinearExpr.newBuilder();
+                List<BoolVar> beginChoices = new ArrayList<>();
+                for (int j = 0; j < numSlots; j++) {
+                    begins[j][f] = model.newBoolVar(prefix + "begin_slot_" + j + "_family_" + f);
+                    beginChoices.add(begins[j][f]);
+                    firstIndex.addTerm(begins[j][f], j);
+                }
+                model.addEquality(LinearExpr.sum(beginChoices.toArray(new BoolVar[0])), present[f]);
+                model.addEquality(firstSlot[f], firstIndex).onlyEnforceIf(present[f]);
+            }
+
+            // Circuit over the batches, an absent family loops on itself and an idle machine on node 0
+            CircuitConstraint circuit = model.addCircuit();
+            idle = model.newBoolVar(prefix + "idle");
+            circuit.addArc(0, 0, idle);
+            for (int f = 0; f < numFamilies; f++) {
+                if (present[f] == null) {
+                    continue;
+                }
+                circuit.addArc(f + 1, f + 1, present[f].not());
+                model.addImplication(present[f], idle.not());
+
+                arcs[0][f + 1] = model.newBoolVar(prefix + "arc_idle_" + f);
+                arcs[f + 1][0] = model.newBoolVar(prefix + "arc_" + f + "_idle");
+                circuit.addArc(0, f + 1, arcs[0][f + 1]);
+                circuit.addArc(f + 1, 0, arcs[f + 1][0]);
+
+                for (int g = 0; g < numFamilies; g++) {
+                    if (g == f || present[g] == null) {
+                        continue;
+                    }
+                    arcs[f + 1][g + 1] = model.newBoolVar(prefix + "arc_" + f + "_" + g);
+                    circuit.addArc(f + 1, g + 1, arcs[f + 1][g + 1]);
+                    // The next batch starts where this one ends or later
+                    model.addGreaterOrEqual(firstSlot[g], lastSlot[f]).onlyEnforceIf(arcs[f + 1][g + 1]);
+                }
+            }
+
+            // Changeover into each batch, from the batch before it on the circuit
+            for (int f = 0; f < numFamilies; f++) {
+                int maxSetup = present[f] == null ? 0 : matrix.getMaxTimeInto(f);
+                if (maxSetup == 0) {
+                    continue;
+                }
+                LinearExprBuilder setupIn = LinearExpr.newBuilder();
+                for (int g = 0; g < numFamilies; g++) {
+                    if (arcs[g + 1][f + 1] != null) {
+                        setupIn.addTerm(arcs[g + 1][f + 1], matrix.getTime(g, f));
+                    }
+                }
+                LinearExpr setup = setupIn.build();
+                for (int j = 0; j < numSlots; j++) {
+                    charges[j][f] = model.newIntVar(0, maxSetup, prefix + "setup_slot_" + j + "_family_" + f);
+                    model.addGreaterOrEqual(charges[j][f], setup).onlyEnforceIf(begins[j][f]);
+                }
+            }
+
+            // Changeovers and pieces run back to back from the slot start and must finish inside it. A slot too
+            // short for any piece may still hold the changeover into the batch that starts there
+            for (int j = 0; j < numSlots; j++) {
+                LinearExprBuilder load = LinearExpr.newBuilder();
+                List<BoolVar> slotBatches = new ArrayList<>();
+                boolean charged = false;
+                for (int f = 0; f < numFamilies; f++) {
+                    if (counts[j][f] != null) {
+                        load.addTerm(counts[j][f], processingTimes[f]);
+                        slotBatches.add(inBatch[j][f]);
+                    }
+                    if (charges[j][f] != null) {
+                        load.add(charges[j][f]);
+                        charged = true;
+                    }
+                }
+                if (slotBatches.isEmpty() && !charged) {
+                    continue;
+                }
+                LinearExpr slotLoad = load.build();
+                model.addLessOrEqual(slotLoad, slots[j][1] - slots[j][0]);
+                if (slotBatches.isEmpty()) {
+                    continue;
+                }
+
+                used[j] = model.newBoolVar(prefix + "used_slot_" + j);
+                for (BoolVar batch : slotBatches) {
+                    model.addImplication(batch, used[j]);
+                }
+                model.addGreaterOrEqual(makespan, LinearExpr.affine(slotLoad, 1, slots[j][0])).onlyEnforceIf(used[j]);
+            }
+        }
+
+        List<IntVar> familyCounts(int f) {
+            List<IntVar> familyCounts = new ArrayList<>();
+            for (IntVar[] slotCounts : counts) {
+                if (slotCounts[f] != null) {
+                    familyCounts.add(slotCounts[f]);
+                }
+            }
+            return familyCounts;
+        }
+
+        // A complete hint, CP-SAT repairs partial hints poorly once the circuit is involved
+        void hint(CpModel model, Greedy greedy) {
+            int[][] greedyCounts = greedy.counts[machine];
+            List<Integer> sequence = greedy.sequences.get(machine);
+            int[] setupSlot = greedy.setupSlots[machine];
+            int[] setupTime = new int[numFamilies];
+
+            for (int k = 0; k < sequence.size(); k++) {
+                int f = sequence.get(k);
+                if (k > 0) {
+                    setupTime[f] = matrix.getTime(sequence.get(k - 1), f);
+                }
+            }
+
+            boolean[] inSequence = new boolean[numFamilies];
+            sequence.forEach(f -> inSequence[f] = true);
+
+            for (int f = 0; f < numFamilies; f++) {
+                if (present[f] == null) {
+                    continue;
+                }
+                model.addHint(present[f], inSequence[f] ? 1 : 0);
+                int first = inSequence[f] ? setupSlot[f] : 0;
+                int last = first;
+                for (int j = 0; j < slots.length; j++) {
+                    int count = j < greedyCounts.length ? greedyCounts[j][f] : 0;
+                    if (counts[j][f] != null) {
+                        model.addHint(counts[j][f], count);
+                        model.addHint(inBatch[j][f], count > 0 ? 1 : 0);
+                    }
+                    if (count > 0) {
+                        last = j;
+                    }
+                    model.addHint(begins[j][f], inSequence[f] && j == first ? 1 : 0);
+                    if (charges[j][f] != null) {
+                        model.addHint(charges[j][f], inSequence[f] && j == first ? setupTime[f] : 0);
+                    }
+                }
+                model.addHint(firstSlot[f], first);
+                model.addHint(lastSlot[f], last);
+            }
+
+            // Arcs of the greedy batch order, from and back to the idle node
+            boolean[][] arcValues = new boolean[numFamilies + 1][numFamilies + 1];
+            int from = 0;
+            for (int f : sequence) {
+                arcValues[from][f + 1] = true;
+                from = f + 1;
+            }
+            arcValues[from][0] = !sequence.isEmpty();
+            for (int tail = 0; tail <= numFamilies; tail++) {
+                for (int head = 0; head <= numFamilies; head++) {
+                    if (arcs[tail][head] != null) {
+                        model.addHint(arcs[tail][head], arcValues[tail][head] ? 1 : 0);
+                    }
+                }
+            }
+            model.addHint(idle, sequence.isEmpty() ? 1 : 0);
+
+            for (int j = 0; j < slots.length; j++) {
+                if (used[j] != null) {
+                    boolean slotUsed = j < greedyCounts.length && Arrays.stream(greedyCounts[j]).sum() > 0;
+                    model.addHint(used[j], slotUsed ? 1 : 0);
+                }
+            }
+        }
+
+        void decode(CpSolver solver, ScheduleResult.Builder builder, int[] nextPiece) {
+            // Batch order from the circuit, starting after the idle node
+            List<Integer> sequence = new ArrayList<>();
+            int node = 0;
+            do {
+                int next = 0;
+                for (int to = 1; to <= numFamilies; to++) {
+                    if (arcs[node][to] != null && solver.booleanValue(arcs[node][to])) {
+                        next = to;
+                        break;
+                    }
+                }
+                if (next != 0) {
+                    sequence.add(next - 1);
+                }
+                node = next;
+            } while (node != 0);
+
+            for (int j = 0; j < slots.length; j++) {
+                long cursor = slots[j][0];
+                for (int k = 0; k < sequence.size(); k++) {
+                    int f = sequence.get(k);
+                    if (k > 0 && solver.value(firstSlot[f]) == j) {
+                        cursor += matrix.getTime(sequence.get(k - 1), f);
+                    }
+                    long count = counts[j][f] == null ? 0 : solver.value(counts[j][f]);
+                    for (int c = 0; c < count; c++) {
+                        builder.addTask(machine, nextPiece[f]++, cursor, cursor + processingTimes[f]);
+                        cursor += processingTimes[f];
+                    }
+                }
+            }
+        }
+    }
+
+    // Greedy schedule with its batch order per machine and the slot each batch starts in
+    private static class Greedy {
+
+        private final int[][][] counts;
+        private final List<List<Integer>> sequences;
+        private final int[][] setupSlots;
+        private long makespan;
+
+        Greedy(int[][][] productiveIntervalsInSeconds, int numFamilies) {
+            int numMachines = productiveIntervalsInSeconds.length;
+            counts = new int[numMachines][][];
+            sequences = new ArrayList<>(numMachines);
+            setupSlots = new int[numMachines][numFamilies];
+            for (int m = 0; m < numMachines; m++) {
+                counts[m] = new int[productiveIntervalsInSeconds[m].length][numFamilies];
+                sequences.add(new ArrayList<>());
+            }
+        }
+    }
+
+    // Longest families first, each piece on the machine where it finishes earliest once the changeover from
+    // the family the machine ran last is paid. Every machine sees the families in one order, so each family
+    // forms a single batch per machine. Returns null when some piece fits in no slot at all
+    private static Greedy greedySchedule(int[][][] productiveIntervalsInSeconds, int[][] processingTimes,
+                                         ChangeoverMatrix[] matrices, List<JobFamily> families) {
+        int numMachines = productiveIntervalsInSeconds.length;
+        Greedy greedy = new Greedy(productiveIntervalsInSeconds, families.size());
+        int[] slotCursor = new int[numMachines];
+        long[] slotUsed = new long[numMachines];
+        int[] lastFamily = new int[numMachines];
+        Arrays.fill(lastFamily, -1);
+
+        Integer[] order = new Integer[families.size()];
+        Arrays.setAll(order, f -> f);
+        Arrays.sort(order, Comparator.comparingInt((Integer f) -> families.get(f).getJob().getDuration()).reversed());
+
+        for (int f : order) {
+            for (int k = 0; k < families.get(f).getQuantity(); k++) {
+                int bestMachine = -1;
+                int bestSetupSlot = 0;
+                int bestSlot = 0;
+                long bestUsed = 0;
+                long bestFinish = Long.MAX_VALUE;
+
+                for (int m = 0; m < numMachines; m++) {
+                    int[][] slots = productiveIntervalsInSeconds[m];
+                    int p = processingTimes[m][f];
+                    int setup = lastFamily[m] < 0 || lastFamily[m] == f ? 0 : matrices[m].getTime(lastFamily[m], f);
+                    int j = slotCursor[m];
+                    long used = slotUsed[m];
+
+                    // The changeover goes into the first slot with room for it
+                    while (j < slots.length && slots[j][1] - slots[j][0] - used < setup) {
+                        j++;
+                        used = 0;
+                    }
+                    int setupSlot = j;
+                    used += setup;
+
+                    while (j < slots.length && slots[j][1] - slots[j][0] - used < p) {
+                        j++;
+                        used = 0;
+                    }
+
+                    if (j < slots.length && slots[j][0] + used + p < bestFinish) {
+                        bestMachine = m;
+                        bestSetupSlot = setupSlot;
+                        bestSlot = j;
+                        bestUsed = used;
+                        bestFinish = slots[j][0] + used + p;
+                    }
+                }
+
+                if (bestMachine < 0) {
+                    return null;
+                }
+
+                if (lastFamily[bestMachine] != f) {
+                    greedy.sequences.get(bestMachine).add(f);
+                    greedy.setupSlots[bestMachine][f] = bestSetupSlot;
+                    lastFamily[bestMachine] = f;
+                }
+                slotCursor[bestMachine] = bestSlot;
+                slotUsed[bestMachine] = bestUsed + processingTimes[bestMachine][f];
+                greedy.counts[bestMachine][bestSlot][f]++;
+                greedy.makespan = Math.max(greedy.makespan, bestFinish);
+            }
+        }
+
+        return greedy;
+    }
+
+    private static ChangeoverMatrix[] matrices(List<Machine> machines, int numFamilies, Map<Integer, ChangeoverMatrix> changeovers) {
+        ChangeoverMatrix[] matrices = new ChangeoverMatrix[machines.size()];
+        for (int m = 0; m < machines.size(); m++) {
+            ChangeoverMatrix matrix = changeovers.get(machines.get(m).getId());
+            if (matrix == null) {
+                matrix = ChangeoverMatrix.none(numFamilies);
+            } else if (matrix.getNumFamilies() != numFamilies) {
+                throw new IllegalArgumentException("Changeover matrix of machine " + machines.get(m).getId() + " covers "
+                        + matrix.getNumFamilies() + " families, the order has " + numFamilies);
+            }
+            matrices[m] = matrix;
+        }
+        return matrices;
+    }
+
+    private static int[][] processingTimes(List<Machine> machines, List<JobFamily> families) {
+        int[][] processingTimes = new int[machines.size()][families.size()];
+        for (int m = 0; m < machines.size(); m++) {
+            for (int f = 0; f < families.size(); f++) {
+                processingTimes[m][f] = families.get(f).getProcessingTime(machines.get(m));
+                if (processingTimes[m][f] <= 0) {
+                    throw new IllegalArgumentException("Family " + f + " has no positive processing time on machine " + machines.get(m).getId());
+                }
+            }
+        }
+        return processingTimes;
+    }
+
+    private static int[][][] preprocessIntervals(List<Machine> machines, ZonedDateTime referencePoint) {
+        long reference = referencePoint.toEpochSecond();
+        int[][][] productiveIntervalsInSeconds = new int[machines.size()][][];
+
+        for (int m = 0; m < machines.size(); m++) {
+            List<TimeSlot> slots = machines.get(m).getSlots();
+            productiveIntervalsInSeconds[m] = new int[slots.size()][];
+            for (int j = 0; j < slots.size(); j++) {
+                productiveIntervalsInSeconds[m][j] = new int[]{
+                        (int) (slots.get(j).getStartTimeInSeconds() - reference),
+                        (int) (slots.get(j).getEndTimeInSeconds() - reference)};
+            }
+            Arrays.sort(productiveIntervalsInSeconds[m], Comparator.comparingInt(slot -> slot[0]));
+        }
+        return productiveIntervalsInSeconds;
+    }
+
+    private static ZonedDateTime findEarliestStart(List<Machine> machines) {
+        return machines.stream()
+                .flatMap(machine -> machine.getSlots().stream())
+                .map(TimeSlot::getStartTime)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    private static int findLatestEnd(int[][][] productiveIntervalsInSeconds) {
+        return Arrays.stream(productiveIntervalsInSeconds)
+                .flatMap(Arrays::stream)
+                .mapToInt(interval -> interval[1])
+                .max()
+                .orElse(0);
+    }
+}
@@ -1,6 +1,5 @@
 package es.emi;
 
-import com.google.ortools.Loader;
 import com.google.ortools.sat.CpModel;
 import com.google.ortools.sat.CpSolver;
 import com.google.ortools.sat.IntVar;
@@ -9,7 +8,7 @@ public class CpModelTest {
 
     public static void solver() {
 
-        Loader.loadNativeLibraries();
+        NativeRuntime.load();
 
         CpModel model = new CpModel();
         CpSolver solver = new CpSolver();
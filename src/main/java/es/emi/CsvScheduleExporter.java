@@ -0,0 +1,28 @@
+package es.emi;
+
+import java.nio.ByteBuffer;
+
+// machine,piece,start,end with epoch seconds
+public class CsvScheduleExporter extends BufferedScheduleExporter {
+
+    private static final byte[] HEADER = ascii("machine,piece,start,end\n");
+
+    @Override
+    protected void writeHeader(ScheduleResult result, ByteBuffer buffer) {
+        buffer.put(HEADER);
+    }
+
+    @Override
+    protected void writeTask(ScheduleResult result, int machine, int task, ByteBuffer buffer) {
+        long reference = result.getReferenceEpochSecond();
+
+        putDecimal(buffer, machine);
+        buffer.put((byte) ',');
+        putDecimal(buffer, result.getPieces(machine)[task]);
+        buffer.put((byte) ',');
+        putDecimal(buffer, reference + result.getStarts(machine)[task]);
+        buffer.put((byte) ',');
+        putDecimal(buffer, reference + result.getEnds(machine)[task]);
+        buffer.put((byte) '\n');
+    }
+}
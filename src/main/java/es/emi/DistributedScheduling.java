@@ -0,0 +1,370 @@
+package es.emi;
+
+import com.google.ortools.sat.CpSolverStatus;
+import com.google.ortools.sat.SatParameters;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Coordinator for solving one instance across DistributedWorker JVMs. Machines are split into groups of
+// about equal capacity by the makespan lower bound, and each group gets the pieces its capacity holds by
+// then. The only coupling between groups is that piece count, so the groups are solved independently,
+// one per worker, sent as InstanceSnapshots over local sockets. The partial schedules are merged and a
+// short LNS over the whole instance reconciles them, moving pieces across group borders.
+//   java -cp ... es.emi.DistributedScheduling <instance|snapshot> [--workers n] [--port p] [--engine E] [--time-limit s]
+// starts n local workers on ports p, p+1, ... unless -Dscheduler.workers=host:port,... names running ones.
+public class DistributedScheduling {
+
+    // Running workers, comma separated host:port
+    public static final String WORKERS_PROPERTY = "scheduler.workers";
+    public static final int DEFAULT_PORT = 9101;
+    // Share of the time limit for the groups, the rest is for the reconciliation
+    private static final double PARTITION_SHARE = 0.8;
+    private static final double MIN_RECONCILE_SECONDS = 1;
+    private static final long WORKER_STARTUP_MILLIS = 30_000;
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals) {
+        ScheduleResult result = solver(numMachines, numPieces, cycleTimes, productiveIntervals, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    // Workers from the scheduler.workers property, groups solved with LNS, which keeps its sub-models
+    // bounded however large a group is
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                        SolverConfig config) {
+        SchedulingInstance instance = new SchedulingInstance(numPieces, cycleTimes, productiveIntervals, Integer.MAX_VALUE);
+        return solve(instance, workerAddresses(), SchedulingEngine.LNS, config);
+    }
+
+    public static ScheduleResult solve(SchedulingInstance instance, List<InetSocketAddress> workers, SchedulingEngine engine,
+                                       SolverConfig config) {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("No workers, set -D" + WORKERS_PROPERTY + "=host:port,...");
+        }
+        NativeRuntime.load();
+        long startNanos = System.nanoTime();
+
+        int numMachines = instance.getNumMachines();
+        int numPieces = instance.getNumPieces();
+        int[] cycleTimes = instance.getCycleTimes();
+        ZonedDateTime[][][] productiveIntervals = instance.getProductiveIntervals();
+        ZonedDateTime referencePoint = findEarliestStart(productiveIntervals);
+
+        // Capacity pre-check, infeasible requests never reach the workers
+        CapacityCheck capacity = CapacityCheck.forSlots(numPieces, cycleTimes, productiveIntervals, referencePoint, Long.MAX_VALUE);
+        if (!capacity.isFeasible()) {
+            return ScheduleResult.rejected(capacity, referencePoint.toEpochSecond());
+        }
+        int[][][] slots = preprocessIntervals(numMachines, cycleTimes, productiveIntervals, referencePoint);
+
+        double timeLimit = config.getMaxTimeInSeconds() > 0 ? config.getMaxTimeInSeconds() : LnsScheduling.DEFAULT_TIME_LIMIT_SECONDS;
+        SatParameters.Builder parameters = SatParameters.newBuilder();
+        if (config.getBaseParameters() != null) {
+            parameters.mergeFrom(config.getBaseParameters());
+        }
+        parameters.setMaxTimeInSeconds(timeLimit * PARTITION_SHARE);
+        if (config.getNumWorkers() > 0) {
+            parameters.setNumWorkers(config.getNumWorkers());
+        }
+
+        // One group per worker, all solved at the same time
+        List<Group> groups = partition(cycleTimes, slots, numPieces, workers.size());
+        ExecutorService executor = Executors.newFixedThreadPool(groups.size());
+        ScheduleResult merged;
+        try {
+            List<Future<ScheduleResult>> partials = new ArrayList<>(groups.size());
+            for (int g = 0; g < groups.size(); g++) {
+                SchedulingInstance part = groups.get(g).instance(instance);
+                InstanceSnapshot request = new InstanceSnapshot(engine.name(), part, parameters.build(), null, null);
+                InetSocketAddress worker = workers.get(g);
+                partials.add(executor.submit(() -> send(worker, request)));
+            }
+            merged = merge(groups, partials, numMachines, referencePoint.toEpochSecond(), config.getLog());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Reconciliation: the merged schedule is the LNS incumbent, the greedy when a group failed
+        SolverConfig reconcile = config.copy();
+        double remaining = timeLimit - (System.nanoTime() - startNanos) / 1e9;
+        reconcile.setMaxTimeInSeconds(Math.max(remaining, MIN_RECONCILE_SECONDS));
+        ScheduleResult result = LnsScheduling.improve(numMachines, numPieces, cycleTimes, productiveIntervals, merged, reconcile);
+
+        return withWallTime(result, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private static ScheduleResult send(InetSocketAddress worker, InstanceSnapshot request) throws IOException {
+        try (Socket socket = new Socket(worker.getAddress(), worker.getPort());
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+             DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            DistributedWorker.writeFrame(out, request);
+            return DistributedWorker.readFrame(in).getSchedule();
+        }
+    }
+
+    // Partial schedules mapped back to the instance's machines and reference point, null when any group
+    // came back without a solution
+    private static ScheduleResult merge(List<Group> groups, List<Future<ScheduleResult>> partials, int numMachines,
+                                        long referenceEpochSecond, SolveLog log) {
+        ScheduleResult.Builder builder = new ScheduleResult.Builder(numMachines);
+        int piece = 0;
+        for (int g = 0; g < groups.size(); g++) {
+            ScheduleResult partial;
+            try {
+                partial = partials.get(g).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                if (log != null) {
+                    log.info("distributed: group " + g + " failed: " + e.getCause().getMessage());
+                }
+                return null;
+            }
+            if (!partial.hasSolution()) {
+                if (log != null) {
+                    log.info("distributed: group " + g + " returned " + partial.getStatus());
+                }
+                return null;
+            }
+
+            long shift = partial.getReferenceEpochSecond() - referenceEpochSecond;
+            int[] machines = groups.get(g).machines;
+            for (int j = 0; j < machines.length; j++) {
+                long[] starts = partial.getStarts(j);
+                long[] ends = partial.getEnds(j);
+                for (int k = 0; k < starts.length; k++) {
+                    builder.addTask(machines[j], piece++, starts[k] + shift, ends[k] + shift);
+                }
+            }
+        }
+        return builder.build(CpSolverStatus.FEASIBLE, referenceEpochSecond, 0);
+    }
+
+    // Machines in groups of about equal capacity by the makespan bound T, longest-processing-time style,
+    // and each group's pieces in proportion to that capacity. A group never gets more pieces than it can
+    // finish by T, so every group is feasible and finishes around the bound.
+    private static List<Group> partition(int[] cycleTimes, int[][][] slots, int numPieces, int maxGroups) {
+        int numMachines = cycleTimes.length;
+        long bound = MakespanBound.slotBound(cycleTimes, slots, numPieces);
+        long[] capacities = new long[numMachines];
+        Integer[] byCapacity = new Integer[numMachines];
+        for (int m = 0; m < numMachines; m++) {
+            capacities[m] = Math.min(MakespanBound.machineCapacity(cycleTimes[m], slots[m], bound), numPieces);
+            byCapacity[m] = m;
+        }
+        Arrays.sort(byCapacity, (a, b) -> Long.compare(capacities[b], capacities[a]));
+
+        int numGroups = Math.max(1, Math.min(maxGroups, numMachines));
+        List<List<Integer>> members = new ArrayList<>(numGroups);
+        long[] groupCapacity = new long[numGroups];
+        for (int g = 0; g < numGroups; g++) {
+            members.add(new ArrayList<>());
+        }
+        for (int m : byCapacity) {
+            int smallest = 0;
+            for (int g = 1; g < numGroups; g++) {
+                if (groupCapacity[g] < groupCapacity[smallest]) {
+                    smallest = g;
+                }
+            }
+            members.get(smallest).add(m);
+            groupCapacity[smallest] += capacities[m];
+        }
+
+        // Largest remainder, so the quotas add up to numPieces
+        long total = Arrays.stream(groupCapacity).sum();
+        int[] quotas = new int[numGroups];
+        double[] remainders = new double[numGroups];
+        int assigned = 0;
+        for (int g = 0; g < numGroups; g++) {
+            double exact = (double) numPieces * groupCapacity[g] / total;
+            quotas[g] = (int) exact;
+            remainders[g] = exact - quotas[g];
+            assigned += quotas[g];
+        }
+        while (assigned < numPieces) {
+            int largest = 0;
+            for (int g = 1; g < numGroups; g++) {
+                if (remainders[g] > remainders[largest]) {
+                    largest = g;
+                }
+            }
+            quotas[largest]++;
+            remainders[largest] = -1;
+            assigned++;
+        }
+
+        List<Group> groups = new ArrayList<>();
+        for (int g = 0; g < numGroups; g++) {
+            if (quotas[g] > 0) {
+                int[] machines = members.get(g).stream().mapToInt(Integer::intValue).sorted().toArray();
+                groups.add(new Group(machines, quotas[g]));
+            }
+        }
+        return groups;
+    }
+
+    // Same tasks, with the coordinator's wall time instead of the reconciliation's alone
+    private static ScheduleResult withWallTime(ScheduleResult result, double wallTime) {
+        ScheduleResult.Builder builder = new ScheduleResult.Builder(result.getNumMachines());
+        for (int m = 0; m < result.getNumMachines(); m++) {
+            int[] pieces = result.getPieces(m);
+            for (int k = 0; k < pieces.length; k++) {
+                builder.addTask(m, pieces[k], result.getStarts(m)[k], result.getEnds(m)[k]);
+            }
+        }
+        builder.setLowerBound(result.getLowerBound());
+        builder.setCapacityCheck(result.getCapacityCheck());
+        return builder.build(result.getStatus(), result.getReferenceEpochSecond(), wallTime);
+    }
+
+    public static List<InetSocketAddress> workerAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        String property = System.getProperty(WORKERS_PROPERTY, "");
+        for (String worker : property.split(",")) {
+            if (!worker.isBlank()) {
+                String[] hostPort = worker.trim().split(":");
+                addresses.add(new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1])));
+            }
+        }
+        return addresses;
+    }
+
+    // Worker JVMs on this box with the coordinator's classpath, returned once they accept connections
+    public static List<Process> launchLocalWorkers(int count, int basePort) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>(count);
+        for (int w = 0; w < count; w++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    DistributedWorker.class.getName(), String.valueOf(basePort + w));
+            builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            processes.add(builder.start());
+        }
+
+        long deadline = System.currentTimeMillis() + WORKER_STARTUP_MILLIS;
+        for (int w = 0; w < count; w++) {
+            while (true) {
+                try {
+                    new Socket("127.0.0.1", basePort + w).close();
+                    break;
+                } catch (IOException e) {
+                    if (System.currentTimeMillis() > deadline || !processes.get(w).isAlive()) {
+                        processes.forEach(Process::destroy);
+                        throw new IOException("Worker on port " + (basePort + w) + " did not start", e);
+                    }
+                    sleep(100);
+                }
+            }
+        }
+        return processes;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for workers", e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: DistributedScheduling <instance|snapshot> [--workers n] [--port p] [--engine E] [--time-limit s]");
+            return;
+        }
+
+        SchedulingInstance instance = SchedulingInstance.read(Path.of(args[0]));
+        int count = 2;
+        int port = DEFAULT_PORT;
+        SchedulingEngine engine = SchedulingEngine.LNS;
+        SolverConfig config = new SolverConfig();
+        config.setLogSearchProgress(false);
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--workers" -> count = Integer.parseInt(args[++i]);
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--engine" -> engine = SchedulingEngine.valueOf(args[++i]);
+                case "--time-limit" -> config.setMaxTimeInSeconds(Double.parseDouble(args[++i]));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        List<InetSocketAddress> workers = workerAddresses();
+        List<Process> processes = List.of();
+        if (workers.isEmpty()) {
+            processes = launchLocalWorkers(count, port);
+            for (int w = 0; w < count; w++) {
+                workers.add(new InetSocketAddress("127.0.0.1", port + w));
+            }
+        }
+
+        try {
+            solve(instance, workers, engine, config).print();
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+    }
+
+    private static ZonedDateTime findEarliestStart(ZonedDateTime[][][] productiveIntervals) {
+        return Arrays.stream(productiveIntervals)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    private static int[][][] preprocessIntervals(int numMachines, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, ZonedDateTime referencePoint) {
+        int[][][] productiveIntervalsInSeconds = new int[numMachines][][];
+        for (int m = 0; m < numMachines; m++) {
+            List<int[]> validIntervals = new ArrayList<>();
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                int start = (int) ChronoUnit.SECONDS.between(referencePoint, interval[0]);
+                int end = (int) ChronoUnit.SECONDS.between(referencePoint, interval[1]);
+                if (end - start >= cycleTimes[m]) {
+                    validIntervals.add(new int[]{start, end});
+                }
+            }
+            productiveIntervalsInSeconds[m] = validIntervals.toArray(new int[0][]);
+        }
+        return productiveIntervalsInSeconds;
+    }
+
+    // Machines of one group and the pieces it has to make
+    private static final class Group {
+        private final int[] machines;
+        private final int pieces;
+
+        Group(int[] machines, int pieces) {
+            this.machines = machines;
+            this.pieces = pieces;
+        }
+
+        SchedulingInstance instance(SchedulingInstance whole) {
+            int[] cycleTimes = new int[machines.length];
+            ZonedDateTime[][][] productiveIntervals = new ZonedDateTime[machines.length][][];
+            for (int j = 0; j < machines.length; j++) {
+                cycleTimes[j] = whole.getCycleTimes()[machines[j]];
+                productiveIntervals[j] = whole.getProductiveIntervals()[machines[j]];
+            }
+            return new SchedulingInstance(pieces, cycleTimes, productiveIntervals, whole.getMaxEnd());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package es.emi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+// Solver process for DistributedScheduling, one per JVM:
+//   java -cp ... es.emi.DistributedWorker <port> [bindAddress]
+// Binds to the loopback address unless told otherwise. A connection carries any number of requests, each
+// a length-prefixed InstanceSnapshot whose engine and parameters say how to solve it. The reply is the
+// same snapshot with the schedule attached, or length -1 followed by the error message.
+public class DistributedWorker {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: DistributedWorker <port> [bindAddress]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        InetAddress address = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+
+        NativeRuntime.warmUp();
+
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(address, port));
+            System.out.println("Worker listening on " + server.getLocalSocketAddress());
+            while (!server.isClosed()) {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> serve(socket), "worker-" + socket.getPort());
+                connection.setDaemon(true);
+                connection.start();
+            }
+        }
+    }
+
+    private static void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(socket.getInputStream());
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+            while (true) {
+                InstanceSnapshot request;
+                try {
+                    request = readFrame(in);
+                } catch (EOFException e) {
+                    return;
+                }
+
+                try {
+                    writeFrame(out, solve(request));
+                } catch (RuntimeException e) {
+                    out.writeInt(-1);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Worker connection failed: " + e.getMessage());
+        }
+    }
+
+    private static InstanceSnapshot solve(InstanceSnapshot request) {
+        SolverConfig config = new SolverConfig();
+        config.setBaseParameters(request.getParameters());
+        // Engines like LNS budget their own time, so the limit also goes into the config itself
+        if (request.getParameters().hasMaxTimeInSeconds()) {
+            config.setMaxTimeInSeconds(request.getParameters().getMaxTimeInSeconds());
+        }
+        config.setNumWorkers(request.getParameters().getNumWorkers());
+        config.setLogSearchProgress(false);
+
+        ScheduleResult result = SchedulingEngine.valueOf(request.getEngine()).solve(request.getInstance(), config);
+        return new InstanceSnapshot(request.getEngine(), request.getInstance(), request.getParameters(), null, result);
+    }
+
+    static void writeFrame(DataOutputStream out, InstanceSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.write(Channels.newChannel(bytes));
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        out.flush();
+    }
+
+    // Throws EOFException when the peer closed the connection between frames
+    static InstanceSnapshot readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IllegalStateException("Worker failed: " + in.readUTF());
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return InstanceSnapshot.read(ByteBuffer.wrap(bytes));
+    }
+}
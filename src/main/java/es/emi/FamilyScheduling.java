@@ -0,0 +1,246 @@
+package es.emi;
+
+import com.google.ortools.sat.*;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Orders made of several job families. Instead of one interval per piece, each machine slot holds
+// an integer count per family, so the model grows with machines x slots x families and not with pieces.
+// Pieces of family f get the ids [offset_f, offset_f + quantity_f) in family order.
+public class FamilyScheduling {
+
+    public static ScheduleResult solver(List<Machine> machines, List<JobFamily> families) {
+        ScheduleResult result = solver(machines, families, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    public static ScheduleResult solver(List<Machine> machines, List<JobFamily> families, SolverConfig config) {
+        NativeRuntime.load();
+
+        int numMachines = machines.size();
+        int numFamilies = families.size();
+
+        // Convert calendars to seconds from the earliest slot start
+        ZonedDateTime referencePoint = findEarliestStart(machines);
+        int[][][] productiveIntervalsInSeconds = preprocessIntervals(machines, referencePoint);
+        int[][] processingTimes = processingTimes(machines, families);
+
+        // Greedy list schedule: upper bound for the makespan and a complete hint
+        int[][][] greedyCounts = new int[numMachines][][];
+        long upperBound = greedySchedule(productiveIntervalsInSeconds, processingTimes, families, greedyCounts);
+        boolean hinted = upperBound >= 0;
+        if (!hinted) {
+            upperBound = findLatestEnd(productiveIntervalsInSeconds);
+        }
+
+        // Initialize model
+        CpModel model = new CpModel();
+        IntVar makespan = model.newIntVar(0, upperBound, "makespan");
+        IntVar[][][] counts = new IntVar[numMachines][][];
+        List<List<IntVar>> familyCounts = new ArrayList<>(numFamilies);
+        for (int f = 0; f < numFamilies; f++) {
+            familyCounts.add(new ArrayList<>());
+        }
+
+        for (int m = 0; m < numMachines; m++) {
+            int[][] slots = productiveIntervalsInSeconds[m];
+            counts[m] = new IntVar[slots.length][numFamilies];
+
+            for (int j = 0; j < slots.length; j++) {
+                // A used slot ends its last piece before the makespan, later slots can never be used
+                if (slots[j][0] >= upperBound) {
+                    continue;
+                }
+
+                int slotLength = slots[j][1] - slots[j][0];
+                List<IntVar> slotCounts = new ArrayList<>();
+                List<Long> slotTimes = new ArrayList<>();
+
+                for (int f = 0; f < numFamilies; f++) {
+                    int maxCount = Math.min(slotLength / processingTimes[m][f], families.get(f).getQuantity());
+                    if (maxCount == 0) {
+                        continue;
+                    }
+
+                    counts[m][j][f] = model.newIntVar(0, maxCount, "count_machine_" + m + "_slot_" + j + "_family_" + f);
+                    slotCounts.add(counts[m][j][f]);
+                    slotTimes.add((long) processingTimes[m][f]);
+                    familyCounts.get(f).add(counts[m][j][f]);
+
+                    if (hinted) {
+                        model.addHint(counts[m][j][f], greedyCounts[m][j][f]);
+                    }
+                }
+
+                if (slotCounts.isEmpty()) {
+                    continue;
+                }
+
+                // Pieces run back to back from the slot start and must finish inside it
+                LinearExpr load = LinearExpr.weightedSum(slotCounts.toArray(new IntVar[0]),
+                        slotTimes.stream().mapToLong(Long::longValue).toArray());
+                model.addLessOrEqual(load, slotLength);
+
+                BoolVar used = model.newBoolVar("used_machine_" + m + "_slot_" + j);
+                model.addGreaterOrEqual(LinearExpr.sum(slotCounts.toArray(new IntVar[0])), 1).onlyEnforceIf(used);
+                model.addEquality(LinearExpr.sum(slotCounts.toArray(new IntVar[0])), 0).onlyEnforceIf(used.not());
+                model.addGreaterOrEqual(makespan, LinearExpr.affine(load, 1, slots[j][0])).onlyEnforceIf(used);
+
+                // A complete hint, with only the counts CP-SAT does not find the greedy schedule again
+                if (hinted) {
+                    model.addHint(used, Arrays.stream(greedyCounts[m][j]).sum() > 0 ? 1 : 0);
+                }
+            }
+        }
+
+        // Every family is produced in full
+        for (int f = 0; f < numFamilies; f++) {
+            model.addEquality(LinearExpr.sum(familyCounts.get(f).toArray(new IntVar[0])), families.get(f).getQuantity());
+        }
+
+        if (hinted) {
+            model.addHint(makespan, upperBound);
+        }
+        model.minimize(makespan);
+
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = config.solve(solver, model);
+
+        return decode(status, solver, counts, productiveIntervalsInSeconds, processingTimes, families, referencePoint);
+    }
+
+    private static ScheduleResult decode(CpSolverStatus status, CpSolver solver, IntVar[][][] counts, int[][][] productiveIntervalsInSeconds,
+                                         int[][] processingTimes, List<JobFamily> families, ZonedDateTime referencePoint) {
+        ScheduleResult.Builder builder = new ScheduleResult.Builder(counts.length);
+
+        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
+            int[] nextPiece = new int[families.size()];
+            for (int f = 1; f < families.size(); f++) {
+                nextPiece[f] = nextPiece[f - 1] + families.get(f - 1).getQuantity();
+            }
+
+            for (int m = 0; m < counts.length; m++) {
+                for (int j = 0; j < counts[m].length; j++) {
+                    long cursor = productiveIntervalsInSeconds[m][j][0];
+                    for (int f = 0; f < families.size(); f++) {
+                        long count = counts[m][j][f] == null ? 0 : solver.value(counts[m][j][f]);
+                        for (int k = 0; k < count; k++) {
+                            builder.addTask(m, nextPiece[f]++, cursor, cursor + processingTimes[m][f]);
+                            cursor += processingTimes[m][f];
+                        }
+                    }
+                }
+            }
+            // The objective is the makespan
+            builder.setLowerBound((long) Math.ceil(solver.bestObjectiveBound()));
+        }
+
+        return builder.build(status, referencePoint.toEpochSecond(), solver.wallTime());
+    }
+
+    // Longest families first, each piece on the machine where it finishes earliest.
+    // Returns the makespan, or -1 when some piece fits in no slot at all
+    private static long greedySchedule(int[][][] productiveIntervalsInSeconds, int[][] processingTimes,
+                                       List<JobFamily> families, int[][][] greedyCounts) {
+        int numMachines = productiveIntervalsInSeconds.length;
+        int[] slotCursor = new int[numMachines];
+        long[] slotUsed = new long[numMachines];
+        for (int m = 0; m < numMachines; m++) {
+            greedyCounts[m] = new int[productiveIntervalsInSeconds[m].length][families.size()];
+        }
+
+        Integer[] order = new Integer[families.size()];
+        Arrays.setAll(order, f -> f);
+        Arrays.sort(order, Comparator.comparingInt((Integer f) -> families.get(f).getJob().getDuration()).reversed());
+
+        long makespan = 0;
+        for (int f : order) {
+            for (int k = 0; k < families.get(f).getQuantity(); k++) {
+                int bestMachine = -1;
+                int bestSlot = 0;
+                long bestUsed = 0;
+                long bestFinish = Long.MAX_VALUE;
+
+                for (int m = 0; m < numMachines; m++) {
+                    int[][] slots = productiveIntervalsInSeconds[m];
+                    int p = processingTimes[m][f];
+                    int j = slotCursor[m];
+                    long used = slotUsed[m];
+
+                    while (j < slots.length && slots[j][1] - slots[j][0] - used < p) {
+                        j++;
+                        used = 0;
+                    }
+
+                    if (j < slots.length && slots[j][0] + used + p < bestFinish) {
+                        bestMachine = m;
+                        bestSlot = j;
+                        bestUsed = used;
+                        bestFinish = slots[j][0] + used + p;
+                    }
+                }
+
+                if (bestMachine < 0) {
+                    return -1;
+                }
+
+                slotCursor[bestMachine] = bestSlot;
+                slotUsed[bestMachine] = bestUsed + processingTimes[bestMachine][f];
+                greedyCounts[bestMachine][bestSlot][f]++;
+                makespan = Math.max(makespan, bestFinish);
+            }
+        }
+
+        return makespan;
+    }
+
+    private static int[][] processingTimes(List<Machine> machines, List<JobFamily> families) {
+        int[][] processingTimes = new int[machines.size()][families.size()];
+        for (int m = 0; m < machines.size(); m++) {
+            for (int f = 0; f < families.size(); f++) {
+                processingTimes[m][f] = families.get(f).getProcessingTime(machines.get(m));
+                if (processingTimes[m][f] <= 0) {
+                    throw new IllegalArgumentException("Family " + f + " has no positive processing time on machine " + machines.get(m).getId());
+                }
+            }
+        }
+        return processingTimes;
+    }
+
+    private static int[][][] preprocessIntervals(List<Machine> machines, ZonedDateTime referencePoint) {
+        long reference = referencePoint.toEpochSecond();
+        int[][][] productiveIntervalsInSeconds = new int[machines.size()][][];
+
+        for (int m = 0; m < machines.size(); m++) {
+            List<TimeSlot> slots = machines.get(m).getSlots();
+            productiveIntervalsInSeconds[m] = new int[slots.size()][];
+            for (int j = 0; j < slots.size(); j++) {
+                productiveIntervalsInSeconds[m][j] = new int[]{
+                        (int) (slots.get(j).getStartTimeInSeconds() - reference),
+                        (int) (slots.get(j).getEndTimeInSeconds() - reference)};
+            }
+        }
+        return productiveIntervalsInSeconds;
+    }
+
+    private static ZonedDateTime findEarliestStart(List<Machine> machines) {
+        return machines.stream()
+                .flatMap(machine -> machine.getSlots().stream())
+                .map(TimeSlot::getStartTime)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    private static int findLatestEnd(int[][][] productiveIntervalsInSeconds) {
+        return Arrays.stream(productiveIntervalsInSeconds)
+                .flatMap(Arrays::stream)
+                .mapToInt(interval -> interval[1])
+                .max()
+                .orElse(0);
+    }
+}
@@ -0,0 +1,82 @@
+package es.emi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Picks the formulation for an instance from the size estimates alone. The exact slot formulation comes
+// first; when it does not fit the budget, LNS keeps its sub-models bounded. C builds the same model as BULK
+// at a higher cost per item, so it is never a fallback for it.
+// Returns null when nothing fits, so the request can be rejected before any model is built.
+public class FormulationSelector {
+
+    private static final SchedulingEngine SLOT_ENGINE = SchedulingEngine.BULK;
+
+    private long memoryBudgetBytes;
+    private long buildTimeBudgetMillis;
+
+    public FormulationSelector(long memoryBudgetBytes, long buildTimeBudgetMillis) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.buildTimeBudgetMillis = buildTimeBudgetMillis;
+    }
+
+    // Half the maximum heap, the rest is left to the other solves and the native side
+    public static FormulationSelector defaults() {
+        return new FormulationSelector(Runtime.getRuntime().maxMemory() / 2, 60_000);
+    }
+
+    public ModelSizeEstimate select(SchedulingInstance instance, boolean resumable) {
+        return select(instance, resumable, new SolverConfig());
+    }
+
+    // The config's worker count sizes the LNS fallback, all cores when it has none
+    public ModelSizeEstimate select(SchedulingInstance instance, boolean resumable, SolverConfig config) {
+        if (resumable) {
+            ModelSizeEstimate estimate = ModelSizeEstimate.of(SchedulingEngine.RESUMABLE, instance, config);
+            return fits(estimate) ? estimate : null;
+        }
+
+        ModelSizeEstimate exact = ModelSizeEstimate.of(SLOT_ENGINE, instance, config);
+        if (fits(exact)) {
+            return exact;
+        }
+
+        ModelSizeEstimate lns = ModelSizeEstimate.of(SchedulingEngine.LNS, instance, config);
+        return fits(lns) ? lns : null;
+    }
+
+    public List<ModelSizeEstimate> estimates(SchedulingInstance instance, boolean resumable) {
+        return estimates(instance, resumable, new SolverConfig());
+    }
+
+    // Every candidate with its estimate, for error messages and logs
+    public List<ModelSizeEstimate> estimates(SchedulingInstance instance, boolean resumable, SolverConfig config) {
+        List<ModelSizeEstimate> estimates = new ArrayList<>();
+        if (resumable) {
+            estimates.add(ModelSizeEstimate.of(SchedulingEngine.RESUMABLE, instance, config));
+        } else {
+            estimates.add(ModelSizeEstimate.of(SLOT_ENGINE, instance, config));
+            estimates.add(ModelSizeEstimate.of(SchedulingEngine.LNS, instance, config));
+        }
+        return estimates;
+    }
+
+    public boolean fits(ModelSizeEstimate estimate) {
+        return estimate.fits(memoryBudgetBytes, buildTimeBudgetMillis);
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public long getBuildTimeBudgetMillis() {
+        return buildTimeBudgetMillis;
+    }
+
+    public void setBuildTimeBudgetMillis(long buildTimeBudgetMillis) {
+        this.buildTimeBudgetMillis = buildTimeBudgetMillis;
+    }
+}
@@ -0,0 +1,193 @@
+package es.emi;
+
+import com.google.ortools.sat.CpModelProto;
+import com.google.ortools.sat.SatParameters;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+// Versioned binary capture of a solved instance, big-endian:
+//   int magic, short version, short flags, engine name (short length + UTF-8)
+//   long reference epoch second, int pieces, int horizon, int machines
+//   per machine: int cycle time, int slots, slots x (int start, int end) in seconds from the reference
+//   int length + SatParameters bytes
+//   flag MODEL:    int length + CpModelProto bytes
+//   flag SCHEDULE: schedule in the BinaryScheduleExporter format
+public class InstanceSnapshot {
+
+    public static final int MAGIC = 0x534E4150; // "SNAP"
+    public static final short VERSION = 1;
+
+    private static final short FLAG_MODEL = 1;
+    private static final short FLAG_SCHEDULE = 2;
+
+    private final String engine;
+    private final SchedulingInstance instance;
+    private final SatParameters parameters;
+    private final CpModelProto model;
+    private final ScheduleResult schedule;
+
+    public InstanceSnapshot(String engine, SchedulingInstance instance, SatParameters parameters,
+                            CpModelProto model, ScheduleResult schedule) {
+        this.engine = engine;
+        this.instance = instance;
+        this.parameters = parameters == null ? SatParameters.getDefaultInstance() : parameters;
+        this.model = model;
+        this.schedule = schedule;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public SchedulingInstance getInstance() {
+        return instance;
+    }
+
+    public SatParameters getParameters() {
+        return parameters;
+    }
+
+    // Null when the snapshot was written without the exported model
+    public CpModelProto getModel() {
+        return model;
+    }
+
+    // Null when the snapshot was written without the returned schedule
+    public ScheduleResult getSchedule() {
+        return schedule;
+    }
+
+    public void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel);
+        }
+    }
+
+    public void write(WritableByteChannel channel) throws IOException {
+        ZonedDateTime[][][] productiveIntervals = instance.getProductiveIntervals();
+        long reference = earliestStart(productiveIntervals);
+        byte[] engineName = engine.getBytes(StandardCharsets.UTF_8);
+        byte[] parameterBytes = parameters.toByteArray();
+        byte[] modelBytes = model == null ? new byte[0] : model.toByteArray();
+
+        int size = 4 + 2 + 2 + 2 + engineName.length + 8 + 4 + 4 + 4
+                + 8 * instance.getNumMachines() + 8 * instance.getNumSlots()
+                + 4 + parameterBytes.length + (model == null ? 0 : 4 + modelBytes.length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) ((model == null ? 0 : FLAG_MODEL) | (schedule == null ? 0 : FLAG_SCHEDULE)));
+        buffer.putShort((short) engineName.length);
+        buffer.put(engineName);
+
+        buffer.putLong(reference);
+        buffer.putInt(instance.getNumPieces());
+        buffer.putInt(instance.getMaxEnd());
+        buffer.putInt(instance.getNumMachines());
+        for (int m = 0; m < instance.getNumMachines(); m++) {
+            buffer.putInt(instance.getCycleTimes()[m]);
+            buffer.putInt(productiveIntervals[m].length);
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                buffer.putInt((int) (interval[0].toEpochSecond() - reference));
+                buffer.putInt((int) (interval[1].toEpochSecond() - reference));
+            }
+        }
+
+        buffer.putInt(parameterBytes.length);
+        buffer.put(parameterBytes);
+        if (model != null) {
+            buffer.putInt(modelBytes.length);
+            buffer.put(modelBytes);
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        if (schedule != null) {
+            new BinaryScheduleExporter().export(schedule, channel);
+        }
+    }
+
+    public static InstanceSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Snapshot too large to map: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    public static InstanceSnapshot read(ByteBuffer buffer) throws InvalidProtocolBufferException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an instance snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        short flags = buffer.getShort();
+
+        byte[] engineName = new byte[buffer.getShort()];
+        buffer.get(engineName);
+
+        long reference = buffer.getLong();
+        int numPieces = buffer.getInt();
+        int maxEnd = buffer.getInt();
+        int numMachines = buffer.getInt();
+
+        int[] cycleTimes = new int[numMachines];
+        ZonedDateTime[][][] productiveIntervals = new ZonedDateTime[numMachines][][];
+        for (int m = 0; m < numMachines; m++) {
+            cycleTimes[m] = buffer.getInt();
+            productiveIntervals[m] = new ZonedDateTime[buffer.getInt()][];
+            for (int j = 0; j < productiveIntervals[m].length; j++) {
+                productiveIntervals[m][j] = new ZonedDateTime[]{toDateTime(reference + buffer.getInt()), toDateTime(reference + buffer.getInt())};
+            }
+        }
+
+        SatParameters parameters = SatParameters.parseFrom(slice(buffer));
+        CpModelProto model = (flags & FLAG_MODEL) != 0 ? CpModelProto.parseFrom(slice(buffer)) : null;
+        ScheduleResult schedule = (flags & FLAG_SCHEDULE) != 0 ? BinaryScheduleExporter.read(buffer) : null;
+
+        return new InstanceSnapshot(new String(engineName, StandardCharsets.UTF_8),
+                new SchedulingInstance(numPieces, cycleTimes, productiveIntervals, maxEnd), parameters, model, schedule);
+    }
+
+    // Length-prefixed view of the next bytes, the protobuf parser reads it without copying
+    private static ByteBuffer slice(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static long earliestStart(ZonedDateTime[][][] productiveIntervals) {
+        long earliest = Long.MAX_VALUE;
+        for (ZonedDateTime[][] calendar : productiveIntervals) {
+            for (ZonedDateTime[] interval : calendar) {
+                earliest = Math.min(earliest, interval[0].toEpochSecond());
+            }
+        }
+        return earliest == Long.MAX_VALUE ? 0 : earliest;
+    }
+
+    private static ZonedDateTime toDateTime(long epochSecond) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+    }
+}
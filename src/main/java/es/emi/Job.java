@@ -17,4 +17,9 @@ public class Job {
     public void setDuration(int duration) {
         this.duration = duration;
     }
+
+    // Duration is in work units, machine speed in seconds per unit
+    public int getProcessingTime(Machine machine) {
+        return duration * machine.getSpeed();
+    }
 }
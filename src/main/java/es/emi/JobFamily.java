@@ -0,0 +1,25 @@
+package es.emi;
+
+// Identical pieces of one job type, modelled as a count instead of one variable set per piece
+public class JobFamily {
+
+    private final Job job;
+    private final int quantity;
+
+    public JobFamily(Job job, int quantity) {
+        this.job = job;
+        this.quantity = quantity;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getProcessingTime(Machine machine) {
+        return job.getProcessingTime(machine);
+    }
+}
@@ -0,0 +1,41 @@
+package es.emi;
+
+import java.nio.ByteBuffer;
+
+// One summary object followed by one object per task, times in epoch seconds
+public class JsonLinesScheduleExporter extends BufferedScheduleExporter {
+
+    private static final byte[] MACHINE = ascii("{\"machine\":");
+    private static final byte[] PIECE = ascii(",\"piece\":");
+    private static final byte[] START = ascii(",\"start\":");
+    private static final byte[] END = ascii(",\"end\":");
+    private static final byte[] CLOSE = ascii("}\n");
+
+    @Override
+    protected void writeHeader(ScheduleResult result, ByteBuffer buffer) {
+        buffer.put(ascii("{\"status\":\"" + result.getStatus() + "\""
+                + ",\"reference\":" + result.getReferenceEpochSecond()
+                + ",\"makespan\":" + (result.getReferenceEpochSecond() + result.getMakespan())
+                + ",\"lowerBound\":" + (result.getReferenceEpochSecond() + result.getLowerBound())
+                + ",\"gap\":" + result.getGap()
+                + (result.getCapacityCheck() == null ? "" : ",\"capacity\":" + result.getCapacityCheck().getTotalCapacity()
+                        + ",\"shortfall\":" + result.getCapacityCheck().getShortfall())
+                + ",\"tasks\":" + result.getNumTasks()
+                + ",\"wallTime\":" + result.getWallTime() + "}\n"));
+    }
+
+    @Override
+    protected void writeTask(ScheduleResult result, int machine, int task, ByteBuffer buffer) {
+        long reference = result.getReferenceEpochSecond();
+
+        buffer.put(MACHINE);
+        putDecimal(buffer, machine);
+        buffer.put(PIECE);
+        putDecimal(buffer, result.getPieces(machine)[task]);
+        buffer.put(START);
+        putDecimal(buffer, reference + result.getStarts(machine)[task]);
+        buffer.put(END);
+        putDecimal(buffer, reference + result.getEnds(machine)[task]);
+        buffer.put(CLOSE);
+    }
+}
@@ -0,0 +1,224 @@
+package es.emi;
+
+import com.google.ortools.sat.*;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Slot-literal formulation solved in lexicographic stages: makespan, then machines used, then idle time.
+// All stage variables exist from the start, so every stage re-solves the same model with the previous
+// objective bounded and the previous solution as a complete hint. A stage that finds nothing in its time
+// limit leaves the previous stage's schedule in place.
+public class LexicographicScheduling {
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals) {
+        ScheduleResult result = solver(numMachines, numPieces, cycleTimes, productiveIntervals, SolverConfig.allCores());
+        result.print();
+        System.out.println("Machines used: " + result.getMachinesUsed() + ", idle time: " + result.getIdleTime() + " s");
+        return result;
+    }
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                        SolverConfig config) {
+        NativeRuntime.load();
+
+        ZonedDateTime referencePoint = findEarliestStart(productiveIntervals);
+        int maxEnd = findLatestEnd(productiveIntervals, referencePoint);
+
+        // Capacity pre-check, infeasible requests return before any model is built
+        CapacityCheck capacity = CapacityCheck.forSlots(numPieces, cycleTimes, productiveIntervals, referencePoint, maxEnd);
+        if (!capacity.isFeasible()) {
+            return ScheduleResult.rejected(capacity, referencePoint.toEpochSecond());
+        }
+        int[][][] productiveIntervalsInSeconds = preprocessIntervals(numMachines, cycleTimes, productiveIntervals, referencePoint);
+
+        CpModel model = new CpModel();
+        BulkModelBuilder builder = new BulkModelBuilder(model, config.isDebugNames());
+
+        // Variable blocks, task (m, i) is at offset m * numPieces + i
+        int numTasks = numMachines * numPieces;
+        int starts = builder.newVariables(numTasks, 0, maxEnd);
+        int ends = builder.newVariables(numTasks, 0, maxEnd);
+        int actives = builder.newVariables(numTasks, 0, 1);
+        int used = builder.newVariables(numMachines, 0, 1);
+        int machineEnds = builder.newVariables(numMachines, 0, maxEnd);
+
+        int[] intervals = new int[numPieces];
+        for (int m = 0; m < numMachines; m++) {
+            int[][] slots = productiveIntervalsInSeconds[m];
+            int[] membership = new int[slots.length + 1];
+            long[] membershipCoeffs = new long[slots.length + 1];
+            Arrays.fill(membershipCoeffs, 1);
+            membershipCoeffs[slots.length] = -1;
+
+            for (int i = 0; i < numPieces; i++) {
+                int task = m * numPieces + i;
+                intervals[i] = builder.addOptionalInterval(starts + task, ends + task, cycleTimes[m], actives + task);
+
+                // Inside exactly one productive interval when active
+                int inInterval = builder.newVariables(slots.length, 0, 1);
+                for (int j = 0; j < slots.length; j++) {
+                    builder.addBounds(starts + task, slots[j][0], maxEnd, inInterval + j);
+                    builder.addBounds(ends + task, 0, slots[j][1], inInterval + j);
+                    membership[j] = inInterval + j;
+                }
+                membership[slots.length] = actives + task;
+                builder.addLinear(membership, membershipCoeffs, 0, 0);
+
+                // A machine is used and busy until its last end once a task runs on it
+                builder.addLinear(new int[]{actives + task, used + m}, new long[]{1, -1}, -1, 0);
+                builder.addLinear(new int[]{machineEnds + m, ends + task}, new long[]{1, -1}, 0, maxEnd, actives + task);
+            }
+
+            builder.addNoOverlap(intervals);
+
+            // Redundant: the tasks of a machine fit before its end, lets the idle stage prove its bound
+            int[] load = new int[numPieces + 1];
+            long[] loadCoeffs = new long[numPieces + 1];
+            for (int i = 0; i < numPieces; i++) {
+                load[i] = actives + m * numPieces + i;
+                loadCoeffs[i] = -cycleTimes[m];
+            }
+            load[numPieces] = machineEnds + m;
+            loadCoeffs[numPieces] = 1;
+            builder.addLinear(load, loadCoeffs, 0, maxEnd);
+        }
+
+        // Ensure each piece is assigned to exactly one machine
+        int[] assignment = new int[numMachines];
+        for (int i = 0; i < numPieces; i++) {
+            for (int m = 0; m < numMachines; m++) {
+                assignment[m] = actives + m * numPieces + i;
+            }
+            builder.addExactlyOne(assignment);
+        }
+
+        // Stage 1: makespan, never below the capacity bound
+        long lowerBound = MakespanBound.slotBound(cycleTimes, productiveIntervalsInSeconds, numPieces);
+        int makespan = builder.newVariable(Math.min(Math.max(lowerBound, 0), maxEnd), maxEnd);
+        int[] allMachineEnds = new int[numMachines];
+        Arrays.setAll(allMachineEnds, m -> machineEnds + m);
+        builder.addMaxEquality(makespan, allMachineEnds);
+        builder.minimize(makespan);
+
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = config.solve(solver, model);
+        double wallTime = solver.wallTime();
+        long bestBound = (long) Math.ceil(solver.bestObjectiveBound());
+
+        // Stage 2: fewest machines used at that makespan
+        int[] usedVars = new int[numMachines];
+        long[] ones = new long[numMachines];
+        Arrays.setAll(usedVars, m -> used + m);
+        Arrays.fill(ones, 1);
+        boolean improving = hasSolution(status);
+        if (improving) {
+            long stageMakespan = (long) solver.objectiveValue();
+            builder.addLinear(new int[]{makespan}, new long[]{1}, 0, stageMakespan);
+
+            // Redundant cover: the used machines must hold every piece before that makespan
+            long[] capacities = new long[numMachines];
+            for (int m = 0; m < numMachines; m++) {
+                capacities[m] = Math.min(MakespanBound.machineCapacity(cycleTimes[m], productiveIntervalsInSeconds[m], stageMakespan), numPieces);
+            }
+            builder.addLinear(usedVars, capacities, numPieces, Long.MAX_VALUE);
+
+            builder.hintAll(solver.response().getSolutionList());
+            builder.minimize(usedVars, ones);
+
+            CpSolver stage = new CpSolver();
+            CpSolverStatus stageStatus = config.solve(stage, model);
+            wallTime += stage.wallTime();
+            improving = hasSolution(stageStatus);
+            if (improving) {
+                solver = stage;
+                status = combine(status, stageStatus);
+            }
+        }
+
+        // Stage 3: least idle time, the sum of machine ends minus the processing time they hold
+        if (improving) {
+            builder.addLinear(usedVars, ones, 0, (long) solver.objectiveValue());
+            builder.hintAll(solver.response().getSolutionList());
+
+            int[] idleVars = new int[numMachines + numTasks];
+            long[] idleCoeffs = new long[numMachines + numTasks];
+            for (int m = 0; m < numMachines; m++) {
+                idleVars[m] = machineEnds + m;
+                idleCoeffs[m] = 1;
+            }
+            for (int task = 0; task < numTasks; task++) {
+                idleVars[numMachines + task] = actives + task;
+                idleCoeffs[numMachines + task] = -cycleTimes[task / numPieces];
+            }
+            builder.minimize(idleVars, idleCoeffs);
+
+            CpSolver stage = new CpSolver();
+            CpSolverStatus stageStatus = config.solve(stage, model);
+            wallTime += stage.wallTime();
+            if (hasSolution(stageStatus)) {
+                solver = stage;
+                status = combine(status, stageStatus);
+            }
+        }
+
+        // Decode the last stage that produced a solution, from the response values by index
+        ScheduleResult.Builder result = new ScheduleResult.Builder(numMachines);
+        if (hasSolution(status)) {
+            CpSolverResponse response = solver.response();
+            for (int task = 0; task < numTasks; task++) {
+                if (response.getSolution(actives + task) == 1) {
+                    result.addTask(task / numPieces, task % numPieces, response.getSolution(starts + task), response.getSolution(ends + task));
+                }
+            }
+            result.setLowerBound(bestBound);
+        }
+
+        return result.build(status, referencePoint.toEpochSecond(), wallTime);
+    }
+
+    // OPTIMAL only when every stage was proven optimal
+    private static CpSolverStatus combine(CpSolverStatus previous, CpSolverStatus stage) {
+        return previous == CpSolverStatus.OPTIMAL && stage == CpSolverStatus.OPTIMAL ? CpSolverStatus.OPTIMAL : CpSolverStatus.FEASIBLE;
+    }
+
+    private static boolean hasSolution(CpSolverStatus status) {
+        return status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE;
+    }
+
+    private static ZonedDateTime findEarliestStart(ZonedDateTime[][][] productiveIntervals) {
+        return Arrays.stream(productiveIntervals)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    private static int findLatestEnd(ZonedDateTime[][][] productiveIntervals, ZonedDateTime referencePoint) {
+        return Arrays.stream(productiveIntervals)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .mapToInt(interval -> (int) ChronoUnit.SECONDS.between(referencePoint, interval))
+                .max()
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    private static int[][][] preprocessIntervals(int numMachines, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, ZonedDateTime referencePoint) {
+        int[][][] productiveIntervalsInSeconds = new int[numMachines][][];
+        for (int m = 0; m < numMachines; m++) {
+            List<int[]> validIntervals = new ArrayList<>();
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                int start = (int) ChronoUnit.SECONDS.between(referencePoint, interval[0]);
+                int end = (int) ChronoUnit.SECONDS.between(referencePoint, interval[1]);
+                if (end - start >= cycleTimes[m]) {
+                    validIntervals.add(new int[]{start, end});
+                }
+            }
+            productiveIntervalsInSeconds[m] = validIntervals.toArray(new int[0][]);
+        }
+        return productiveIntervalsInSeconds;
+    }
+}
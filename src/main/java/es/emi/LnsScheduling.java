@@ -0,0 +1,504 @@
+package es.emi;
+
+import com.google.ortools.sat.*;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Large-neighbourhood search on top of the slot-literal formulation. Starts from an earliest-finish
+// greedy, then several threads repeatedly free the pieces on a subset of machines (optionally only
+// from a time window onwards), keep everything else fixed and re-solve that part with a short limit.
+// Improvements are committed into a shared incumbent. The search ends at the time limit or as soon as
+// the incumbent reaches the capacity lower bound.
+public class LnsScheduling {
+
+    // Total budget when the config has no time limit
+    public static final double DEFAULT_TIME_LIMIT_SECONDS = 30;
+    public static final double SUB_TIME_LIMIT_SECONDS = 1;
+    // Upper bound on the pieces freed by one neighbourhood
+    public static final int MAX_FREE_PIECES = 30;
+    public static final int MAX_MACHINES = 6;
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals) {
+        ScheduleResult result = solver(numMachines, numPieces, cycleTimes, productiveIntervals, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                        SolverConfig config) {
+        return improve(numMachines, numPieces, cycleTimes, productiveIntervals, null, config);
+    }
+
+    // Starts from the given schedule, e.g. partial schedules merged by DistributedScheduling, unless the
+    // greedy already has a shorter makespan. Null starts from the greedy.
+    public static ScheduleResult improve(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                         ScheduleResult initial, SolverConfig config) {
+        NativeRuntime.load();
+        long startNanos = System.nanoTime();
+
+        ZonedDateTime referencePoint = findEarliestStart(productiveIntervals);
+
+        // Capacity pre-check, infeasible requests return before the greedy runs
+        CapacityCheck capacity = CapacityCheck.forSlots(numPieces, cycleTimes, productiveIntervals, referencePoint, Long.MAX_VALUE);
+        if (!capacity.isFeasible()) {
+            return ScheduleResult.rejected(capacity, referencePoint.toEpochSecond());
+        }
+        int[][][] slots = preprocessIntervals(numMachines, cycleTimes, productiveIntervals, referencePoint);
+
+        Incumbent greedy = Incumbent.greedy(numPieces, cycleTimes, slots);
+        // A hint that breaks the calendars or the piece count is dropped instead of seeding the search
+        if (initial != null && !ScheduleValidator.validate(initial, productiveIntervals, cycleTimes, numPieces, false).isValid()) {
+            initial = null;
+        }
+        Incumbent given = initial == null ? null : Incumbent.fromSchedule(numPieces, cycleTimes, initial, referencePoint.toEpochSecond());
+        Incumbent incumbent = given != null && (greedy == null || given.getMakespan() < greedy.getMakespan()) ? given : greedy;
+        if (incumbent == null) {
+            return new ScheduleResult.Builder(numMachines).build(CpSolverStatus.INFEASIBLE, referencePoint.toEpochSecond(), 0);
+        }
+
+        long lowerBound = MakespanBound.slotBound(cycleTimes, slots, numPieces);
+        double timeLimit = config.getMaxTimeInSeconds() > 0 ? config.getMaxTimeInSeconds() : DEFAULT_TIME_LIMIT_SECONDS;
+        long deadline = startNanos + (long) (timeLimit * 1e9);
+        int numThreads = config.getNumWorkers() > 0 ? config.getNumWorkers() : Runtime.getRuntime().availableProcessors();
+
+        // Every sub-solve is single threaded, parallelism comes from the neighbourhoods. The copy keeps the
+        // caller's model listener, log callback, request log and resources
+        SolverConfig subConfig = config.copy();
+        SatParameters.Builder subParameters = SatParameters.newBuilder();
+        if (config.getBaseParameters() != null) {
+            subParameters.mergeFrom(config.getBaseParameters());
+        }
+        // Symmetry detection takes longer than the search on these small models
+        if (!subParameters.hasSymmetryLevel()) {
+            subParameters.setSymmetryLevel(0);
+        }
+        subConfig.setBaseParameters(subParameters.build());
+        subConfig.setNumWorkers(1);
+        subConfig.setLogSearchProgress(false);
+
+        if (numMachines > 1 && incumbent.getMakespan() > lowerBound) {
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            try {
+                List<Future<?>> workers = new ArrayList<>(numThreads);
+                for (int t = 0; t < numThreads; t++) {
+                    Random random = new Random(t);
+                    workers.add(executor.submit(() -> search(incumbent, cycleTimes, slots, subConfig, lowerBound, deadline, random)));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                throw new IllegalStateException("LNS worker failed", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        return incumbent.toResult(referencePoint.toEpochSecond(), lowerBound, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private static void search(Incumbent incumbent, int[] cycleTimes, int[][][] slots, SolverConfig subConfig, long lowerBound,
+                               long deadline, Random random) {
+        while (System.nanoTime() < deadline && incumbent.getMakespan() > lowerBound && !Thread.currentThread().isInterrupted()
+                && (subConfig.getResources() == null || !subConfig.getResources().isExhausted())) {
+            Neighbourhood neighbourhood = incumbent.select(random);
+            double remaining = (deadline - System.nanoTime()) / 1e9;
+            if (remaining <= 0) {
+                return;
+            }
+            SolverConfig config = copyWithTimeLimit(subConfig, Math.min(SUB_TIME_LIMIT_SECONDS, remaining));
+
+            long[][] improved = solveNeighbourhood(neighbourhood, cycleTimes, slots, config);
+            if (improved != null) {
+                incumbent.commit(neighbourhood, improved);
+            }
+        }
+    }
+
+    private static SolverConfig copyWithTimeLimit(SolverConfig config, double seconds) {
+        SolverConfig copy = config.copy();
+        copy.setMaxTimeInSeconds(seconds);
+        return copy;
+    }
+
+    // Re-places the freed pieces of the neighbourhood, returns the new starts per neighbourhood machine
+    // when they score strictly better than the incumbent, null otherwise. Pieces are interchangeable,
+    // so each machine gets an ordered list of optional tasks and only their total count is fixed.
+    private static long[][] solveNeighbourhood(Neighbourhood neighbourhood, int[] cycleTimes, int[][][] slots, SolverConfig config) {
+        int[] machines = neighbourhood.machines;
+        int k = machines.length;
+        long horizon = neighbourhood.horizon;
+
+        CpModel model = new CpModel();
+        BulkModelBuilder builder = new BulkModelBuilder(model, config.isDebugNames());
+
+        int machineEnds = builder.newVariables(k, 0, horizon);
+        int makespan = builder.newVariable(0, horizon);
+        int[][] taskActives = new int[k][];
+        int[][] taskStarts = new int[k][];
+        List<Integer> allActives = new ArrayList<>();
+
+        for (int j = 0; j < k; j++) {
+            int m = machines[j];
+            long available = neighbourhood.available[j];
+            int cycleTime = cycleTimes[m];
+
+            // Calendar slots after the kept tasks, capped at the current end of the neighbourhood
+            List<long[]> freeSlots = new ArrayList<>();
+            long capacity = 0;
+            for (int[] slot : slots[m]) {
+                long start = Math.max(slot[0], available);
+                long end = Math.min(slot[1], horizon);
+                if (end - start >= cycleTime) {
+                    freeSlots.add(new long[]{start, end});
+                    capacity += (end - start) / cycleTime;
+                }
+            }
+            int numTasks = (int) Math.min(capacity, neighbourhood.numFree);
+
+            int starts = builder.newVariables(numTasks, 0, horizon);
+            int ends = builder.newVariables(numTasks, 0, horizon);
+            int actives = builder.newVariables(numTasks, 0, 1);
+            int[] intervals = new int[numTasks];
+            int[] machineTerms = new int[numTasks + 1];
+            int[] membership = new int[freeSlots.size() + 1];
+            long[] membershipCoeffs = new long[freeSlots.size() + 1];
+            Arrays.fill(membershipCoeffs, 1);
+            membershipCoeffs[freeSlots.size()] = -1;
+
+            long[] hinted = neighbourhood.freedStarts[j];
+            for (int i = 0; i < numTasks; i++) {
+                intervals[i] = builder.addOptionalInterval(starts + i, ends + i, cycleTime, actives + i);
+
+                int inInterval = builder.newVariables(freeSlots.size(), 0, 1);
+                for (int s = 0; s < freeSlots.size(); s++) {
+                    builder.addBounds(starts + i, freeSlots.get(s)[0], horizon, inInterval + s);
+                    builder.addBounds(ends + i, 0, freeSlots.get(s)[1], inInterval + s);
+                    membership[s] = inInterval + s;
+                    builder.addHint(inInterval + s, i < hinted.length
+                            && hinted[i] >= freeSlots.get(s)[0] && hinted[i] + cycleTime <= freeSlots.get(s)[1] ? 1 : 0);
+                }
+                membership[freeSlots.size()] = actives + i;
+                builder.addLinear(membership, membershipCoeffs, 0, 0);
+
+                // Tasks are used in order and run in order, which removes the piece symmetry
+                if (i > 0) {
+                    builder.addLinear(new int[]{actives + i - 1, actives + i}, new long[]{1, -1}, 0, 1);
+                    builder.addLinear(new int[]{starts + i, ends + i - 1}, new long[]{1, -1}, 0, horizon);
+                }
+
+                builder.addHint(actives + i, i < hinted.length ? 1 : 0);
+                // Unused tasks sit right after the last used one with an end of 0
+                long lastEnd = hinted.length == 0 ? 0 : hinted[hinted.length - 1] + cycleTime;
+                builder.addHint(starts + i, i < hinted.length ? hinted[i] : lastEnd);
+                builder.addHint(ends + i, i < hinted.length ? hinted[i] + cycleTime : 0);
+                machineTerms[i] = ends + i;
+                allActives.add(actives + i);
+            }
+            builder.addNoOverlap(intervals);
+
+            // Machine end covers the kept tasks as well
+            machineTerms[numTasks] = builder.newVariable(available, available);
+            builder.addMaxEquality(machineEnds + j, machineTerms);
+
+            int[] activeBlock = new int[numTasks];
+            int[] startBlock = new int[numTasks];
+            for (int i = 0; i < numTasks; i++) {
+                activeBlock[i] = actives + i;
+                startBlock[i] = starts + i;
+            }
+            taskActives[j] = activeBlock;
+            taskStarts[j] = startBlock;
+        }
+
+        // All freed pieces are placed again
+        int[] placedCount = allActives.stream().mapToInt(Integer::intValue).toArray();
+        long[] ones = new long[placedCount.length];
+        Arrays.fill(ones, 1);
+        builder.addLinear(placedCount, ones, neighbourhood.numFree, neighbourhood.numFree);
+
+        int[] allMachineEnds = new int[k];
+        Arrays.setAll(allMachineEnds, j -> machineEnds + j);
+        builder.addMaxEquality(makespan, allMachineEnds);
+
+        // Same score as Incumbent.score: the neighbourhood end first, then the sum of machine ends
+        int[] objectiveVars = Arrays.copyOf(allMachineEnds, k + 1);
+        long[] objectiveCoeffs = new long[k + 1];
+        Arrays.fill(objectiveCoeffs, 0, k, 1);
+        objectiveVars[k] = makespan;
+        objectiveCoeffs[k] = k + 1;
+        builder.minimize(objectiveVars, objectiveCoeffs);
+
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = config.solve(solver, model);
+        if (status != CpSolverStatus.OPTIMAL && status != CpSolverStatus.FEASIBLE
+                || (long) solver.objectiveValue() >= neighbourhood.score) {
+            return null;
+        }
+
+        CpSolverResponse response = solver.response();
+        long[][] placed = new long[k][];
+        for (int j = 0; j < k; j++) {
+            long[] machineStarts = new long[taskActives[j].length];
+            int count = 0;
+            for (int i = 0; i < taskActives[j].length; i++) {
+                if (response.getSolution(taskActives[j][i]) == 1) {
+                    machineStarts[count++] = response.getSolution(taskStarts[j][i]);
+                }
+            }
+            placed[j] = Arrays.copyOf(machineStarts, count);
+        }
+        return placed;
+    }
+
+    // Pieces of the chosen machines starting at or after windowStart are freed, the rest stays fixed
+    private static final class Neighbourhood {
+        int[] machines;
+        int[] versions;
+        long windowStart;
+        long[] available;
+        long[][] freedStarts;
+        int numFree;
+        long horizon;
+        long score;
+    }
+
+    // Shared best schedule, pieces are interchangeable so only the sorted starts per machine are kept
+    private static final class Incumbent {
+        private final int numPieces;
+        private final int[] cycleTimes;
+        private final long[][] starts;
+        private final int[] versions;
+
+        private Incumbent(int numPieces, int[] cycleTimes, long[][] starts) {
+            this.numPieces = numPieces;
+            this.cycleTimes = cycleTimes;
+            this.starts = starts;
+            this.versions = new int[starts.length];
+        }
+
+        // Each piece goes to the machine where it finishes first, null when the calendars cannot hold all pieces
+        static Incumbent greedy(int numPieces, int[] cycleTimes, int[][][] slots) {
+            int numMachines = slots.length;
+            int[] slotCursor = new int[numMachines];
+            long[] nextStart = new long[numMachines];
+            List<List<Long>> placed = new ArrayList<>(numMachines);
+            for (int m = 0; m < numMachines; m++) {
+                nextStart[m] = slots[m].length == 0 ? 0 : slots[m][0][0];
+                placed.add(new ArrayList<>());
+            }
+
+            for (int piece = 0; piece < numPieces; piece++) {
+                int best = -1;
+                long bestFinish = Long.MAX_VALUE;
+                for (int m = 0; m < numMachines; m++) {
+                    while (slotCursor[m] < slots[m].length && nextStart[m] + cycleTimes[m] > slots[m][slotCursor[m]][1]) {
+                        slotCursor[m]++;
+                        if (slotCursor[m] < slots[m].length) {
+                            nextStart[m] = Math.max(nextStart[m], slots[m][slotCursor[m]][0]);
+                        }
+                    }
+                    if (slotCursor[m] < slots[m].length && nextStart[m] + cycleTimes[m] < bestFinish) {
+                        best = m;
+                        bestFinish = nextStart[m] + cycleTimes[m];
+                    }
+                }
+                if (best < 0) {
+                    return null;
+                }
+                placed.get(best).add(nextStart[best]);
+                nextStart[best] = bestFinish;
+            }
+
+            long[][] starts = new long[numMachines][];
+            for (int m = 0; m < numMachines; m++) {
+                starts[m] = placed.get(m).stream().mapToLong(Long::longValue).toArray();
+            }
+            return new Incumbent(numPieces, cycleTimes, starts);
+        }
+
+        // Starts moved to this reference point, the schedule may have been solved against another one
+        static Incumbent fromSchedule(int numPieces, int[] cycleTimes, ScheduleResult schedule, long referenceEpochSecond) {
+            if (schedule.getNumTasks() != numPieces || schedule.getNumMachines() != cycleTimes.length) {
+                throw new IllegalArgumentException("Initial schedule has " + schedule.getNumTasks() + " pieces on "
+                        + schedule.getNumMachines() + " machines, expected " + numPieces + " on " + cycleTimes.length);
+            }
+            long shift = schedule.getReferenceEpochSecond() - referenceEpochSecond;
+            long[][] starts = new long[cycleTimes.length][];
+            for (int m = 0; m < cycleTimes.length; m++) {
+                starts[m] = schedule.getStarts(m).clone();
+                for (int k = 0; k < starts[m].length; k++) {
+                    starts[m][k] += shift;
+                }
+                Arrays.sort(starts[m]);
+            }
+            return new Incumbent(numPieces, cycleTimes, starts);
+        }
+
+        private long machineEnd(int m) {
+            return starts[m].length == 0 ? 0 : starts[m][starts[m].length - 1] + cycleTimes[m];
+        }
+
+        synchronized long getMakespan() {
+            long makespan = 0;
+            for (int m = 0; m < starts.length; m++) {
+                makespan = Math.max(makespan, machineEnd(m));
+            }
+            return makespan;
+        }
+
+        synchronized Neighbourhood select(Random random) {
+            int numMachines = starts.length;
+            long makespan = 0;
+            for (int m = 0; m < numMachines; m++) {
+                makespan = Math.max(makespan, machineEnd(m));
+            }
+
+            // A machine finishing at the makespan first, then machines that end early and can take over work
+            List<Integer> bottlenecks = new ArrayList<>();
+            Integer[] byEnd = new Integer[numMachines];
+            for (int m = 0; m < numMachines; m++) {
+                byEnd[m] = m;
+                if (machineEnd(m) == makespan) {
+                    bottlenecks.add(m);
+                }
+            }
+            Arrays.sort(byEnd, (a, b) -> Long.compare(machineEnd(a), machineEnd(b)));
+            int first = bottlenecks.get(random.nextInt(bottlenecks.size()));
+
+            // Either whole machines or only the tail of the schedule, which always frees the bottleneck's last piece
+            long lastStart = starts[first].length == 0 ? 0 : starts[first][starts[first].length - 1];
+            long windowStart = random.nextBoolean() ? 0 : (long) (lastStart * random.nextDouble());
+            // The cap holds for every machine, the bottleneck included. When it alone would exceed it, the window
+            // moves up to its last pieces, half the cap so machines that can take over work still fit
+            if (countFreed(first, windowStart) > MAX_FREE_PIECES) {
+                windowStart = starts[first][starts[first].length - MAX_FREE_PIECES / 2];
+            }
+
+            List<Integer> chosen = new ArrayList<>();
+            chosen.add(first);
+            int numFree = countFreed(first, windowStart);
+            for (int attempt = 0; attempt < 4 * numMachines && chosen.size() < Math.min(numMachines, MAX_MACHINES); attempt++) {
+                // Biased towards the early-ending half
+                int m = random.nextInt(3) > 0 ? byEnd[random.nextInt(Math.max(1, numMachines / 2))] : random.nextInt(numMachines);
+                if (chosen.contains(m)) {
+                    continue;
+                }
+                int freed = countFreed(m, windowStart);
+                if (numFree + freed > MAX_FREE_PIECES) {
+                    continue;
+                }
+                chosen.add(m);
+                numFree += freed;
+            }
+
+            Neighbourhood neighbourhood = new Neighbourhood();
+            int k = chosen.size();
+            neighbourhood.machines = chosen.stream().mapToInt(Integer::intValue).toArray();
+            neighbourhood.versions = new int[k];
+            neighbourhood.windowStart = windowStart;
+            neighbourhood.available = new long[k];
+            neighbourhood.freedStarts = new long[k][];
+            neighbourhood.numFree = numFree;
+
+            long horizon = 0;
+            long sumEnds = 0;
+            for (int j = 0; j < k; j++) {
+                int m = neighbourhood.machines[j];
+                int kept = keptCount(m, windowStart);
+                neighbourhood.versions[j] = versions[m];
+                neighbourhood.available[j] = kept == 0 ? 0 : starts[m][kept - 1] + cycleTimes[m];
+                neighbourhood.freedStarts[j] = Arrays.copyOfRange(starts[m], kept, starts[m].length);
+                horizon = Math.max(horizon, machineEnd(m));
+                sumEnds += machineEnd(m);
+            }
+            neighbourhood.horizon = horizon;
+            neighbourhood.score = score(k, horizon, sumEnds);
+            return neighbourhood;
+        }
+
+        // Applies an improvement unless another thread changed one of its machines meanwhile
+        synchronized void commit(Neighbourhood neighbourhood, long[][] placed) {
+            for (int j = 0; j < neighbourhood.machines.length; j++) {
+                if (versions[neighbourhood.machines[j]] != neighbourhood.versions[j]) {
+                    return;
+                }
+            }
+            for (int j = 0; j < neighbourhood.machines.length; j++) {
+                int m = neighbourhood.machines[j];
+                int kept = keptCount(m, neighbourhood.windowStart);
+                long[] machineStarts = Arrays.copyOf(starts[m], kept + placed[j].length);
+                System.arraycopy(placed[j], 0, machineStarts, kept, placed[j].length);
+                starts[m] = machineStarts;
+                versions[m]++;
+            }
+        }
+
+        private static long score(int k, long makespan, long sumEnds) {
+            return (k + 1) * makespan + sumEnds;
+        }
+
+        private int keptCount(int m, long windowStart) {
+            int kept = 0;
+            while (kept < starts[m].length && starts[m][kept] < windowStart) {
+                kept++;
+            }
+            return kept;
+        }
+
+        private int countFreed(int m, long windowStart) {
+            return starts[m].length - keptCount(m, windowStart);
+        }
+
+        synchronized ScheduleResult toResult(long referenceEpochSecond, long lowerBound, double wallTime) {
+            ScheduleResult.Builder builder = new ScheduleResult.Builder(starts.length);
+            int piece = 0;
+            for (int m = 0; m < starts.length; m++) {
+                for (long start : starts[m]) {
+                    builder.addTask(m, piece++, start, start + cycleTimes[m]);
+                }
+            }
+            if (piece != numPieces) {
+                throw new IllegalStateException("LNS lost pieces: " + piece + " of " + numPieces);
+            }
+            // Reaching the capacity bound proves optimality
+            builder.setLowerBound(lowerBound);
+            return builder.build(getMakespan() <= lowerBound ? CpSolverStatus.OPTIMAL : CpSolverStatus.FEASIBLE, referenceEpochSecond, wallTime);
+        }
+    }
+
+    private static ZonedDateTime findEarliestStart(ZonedDateTime[][][] productiveIntervals) {
+        return Arrays.stream(productiveIntervals)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    private static int[][][] preprocessIntervals(int numMachines, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, ZonedDateTime referencePoint) {
+        int[][][] productiveIntervalsInSeconds = new int[numMachines][][];
+        for (int m = 0; m < numMachines; m++) {
+            List<int[]> validIntervals = new ArrayList<>();
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                int start = (int) ChronoUnit.SECONDS.between(referencePoint, interval[0]);
+                int end = (int) ChronoUnit.SECONDS.between(referencePoint, interval[1]);
+                if (end - start >= cycleTimes[m]) {
+                    validIntervals.add(new int[]{start, end});
+                }
+            }
+            validIntervals.sort((a, b) -> Integer.compare(a[0], b[0]));
+            productiveIntervalsInSeconds[m] = validIntervals.toArray(new int[0][]);
+        }
+        return productiveIntervalsInSeconds;
+    }
+}
@@ -0,0 +1,108 @@
+package es.emi;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Asynchronous destination for solver and model-build logs. Producers only offer a line to a bounded
+// ring (ArrayBlockingQueue) and never block: when the ring is full the line is dropped and counted, so a
+// slow console can never stall a solve. One daemon thread writes the lines and flushes whenever the ring
+// runs empty. Requests log through a SolveLog from open(), which adds verbosity and sampling.
+public final class LogSink implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static volatile LogSink shared;
+
+    private final ArrayBlockingQueue<String> ring;
+    private final Writer out;
+    private final Thread writer;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    public LogSink(int capacity, Writer out) {
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.out = out;
+        this.writer = new Thread(this::drain, "log-sink");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Standard error, shared by every solve in the process
+    public static LogSink shared() {
+        if (shared == null) {
+            synchronized (LogSink.class) {
+                if (shared == null) {
+                    shared = new LogSink(DEFAULT_CAPACITY, new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return shared;
+    }
+
+    public SolveLog open(String requestId, SolveLog.Level level, int sampleEvery) {
+        return new SolveLog(this, requestId, level, sampleEvery);
+    }
+
+    // False when the line was dropped because the ring is full
+    public boolean offer(String line) {
+        if (closed || !ring.offer(line)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getPending() {
+        return ring.size();
+    }
+
+    private void drain() {
+        long reportedDrops = 0;
+        try {
+            while (!closed || !ring.isEmpty()) {
+                String line = ring.poll();
+                if (line == null) {
+                    // Ring is empty: report drops, flush once and wait for the next line
+                    long drops = dropped.get();
+                    if (drops > reportedDrops) {
+                        out.write("[log-sink] " + (drops - reportedDrops) + " lines dropped\n");
+                        reportedDrops = drops;
+                    }
+                    out.flush();
+                    line = ring.poll(100, TimeUnit.MILLISECONDS);
+                    if (line == null) {
+                        continue;
+                    }
+                }
+                out.write(line);
+                out.write('\n');
+            }
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Nowhere left to report it, the solves carry on without logs
+            closed = true;
+        }
+    }
+
+    // Writes what is still in the ring, then stops the writer thread
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package es.emi;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
@@ -10,7 +12,27 @@ public class Main {
 
     private static final ZonedDateTime REFERENCE_POINT = ZonedDateTime.of(LocalDate.of(2024, 8, 7), LocalTime.of(0, 0), ZoneId.of("UTC"));
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+
+        // Long-running mode: java -jar ... serve [port] [snapshotDirectory]
+        if (args.length > 0 && args[0].equals("serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            SchedulingServer server = new SchedulingServer(port, SchedulingServer.DEFAULT_MAX_QUEUED, SchedulingServer.DEFAULT_MAX_MODEL_SIZE);
+            if (args.length > 2) {
+                server.setSnapshotDirectory(Path.of(args[2]));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.start();
+            return;
+        }
+
+        // Used by the cds profile to record the classes loaded by a typical solve
+        if (args.length > 0 && args[0].equals("warmup")) {
+            System.out.println("Warm-up solve: " + NativeRuntime.warmUp());
+            return;
+        }
+
+        NativeRuntime.warmUp();
 
         int intervals = 100;
         int intervalDuration = 15*60; // seconds
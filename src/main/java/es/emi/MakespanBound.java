@@ -0,0 +1,94 @@
+package es.emi;
+
+// Capacity-based makespan lower bounds: the earliest time by which all machines together could have
+// finished numPieces, each machine on its own. Found by binary search on the time, counting in
+// O(M*S) per step. -1 means the calendars cannot hold the pieces at all.
+public final class MakespanBound {
+
+    private MakespanBound() {
+    }
+
+    // Pieces that must fit in a single slot, slots in seconds from the reference point
+    public static long slotBound(int[] cycleTimes, int[][][] slots, int numPieces) {
+        long latest = 0;
+        for (int[][] machineSlots : slots) {
+            for (int[] slot : machineSlots) {
+                latest = Math.max(latest, slot[1]);
+            }
+        }
+        if (numPieces <= 0) {
+            return 0;
+        }
+        if (slotCapacity(cycleTimes, slots, latest, numPieces) < numPieces) {
+            return -1;
+        }
+
+        long low = 0;
+        long high = latest;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (slotCapacity(cycleTimes, slots, mid, numPieces) >= numPieces) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Resumable pieces, only the productive time before the bound counts
+    public static long productiveBound(int[] cycleTimes, ProductiveTimeAxis[] axes, int numPieces) {
+        long latest = 0;
+        for (ProductiveTimeAxis axis : axes) {
+            if (axis.getNumSlots() > 0) {
+                latest = Math.max(latest, axis.getSlotEnd(axis.getNumSlots() - 1));
+            }
+        }
+        if (numPieces <= 0) {
+            return 0;
+        }
+        if (productiveCapacity(cycleTimes, axes, latest, numPieces) < numPieces) {
+            return -1;
+        }
+
+        long low = 0;
+        long high = latest;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (productiveCapacity(cycleTimes, axes, mid, numPieces) >= numPieces) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Pieces finished by time t, stops counting once the target is reached
+    private static long slotCapacity(int[] cycleTimes, int[][][] slots, long t, int target) {
+        long count = 0;
+        for (int m = 0; m < slots.length && count < target; m++) {
+            count += machineCapacity(cycleTimes[m], slots[m], t);
+        }
+        return count;
+    }
+
+    // Pieces a single machine can finish by time t
+    public static long machineCapacity(int cycleTime, int[][] slots, long t) {
+        long count = 0;
+        for (int[] slot : slots) {
+            if (slot[0] < t) {
+                count += (Math.min(slot[1], t) - slot[0]) / cycleTime;
+            }
+        }
+        return count;
+    }
+
+    private static long productiveCapacity(int[] cycleTimes, ProductiveTimeAxis[] axes, long t, int target) {
+        long count = 0;
+        for (int m = 0; m < axes.length && count < target; m++) {
+            count += axes[m].toProductive(t) / cycleTimes[m];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,146 @@
+package es.emi;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+// Predicted size of an engine's model for an instance, computed from machine count, slot counts and
+// numPieces before anything is built. The per-item costs were measured on the 12 machine x 100 slot
+// instances of Main: Java heap during the build, native memory for presolve and search, build time.
+public class ModelSizeEstimate {
+
+    // Heap per variable or constraint, with IntVar/BoolVar wrappers and names, or straight into the proto
+    private static final long WRAPPED_BYTES_PER_ITEM = 750;
+    private static final long BULK_BYTES_PER_ITEM = 360;
+    // CP-SAT copies the model for presolve and keeps its own search structures
+    private static final long NATIVE_BYTES_PER_ITEM = 1000;
+    private static final long WRAPPED_NANOS_PER_ITEM = 4000;
+    private static final long BULK_NANOS_PER_ITEM = 1000;
+
+    private final SchedulingEngine engine;
+    private final long variables;
+    private final long literals;
+    private final long constraints;
+    private final long heapBytes;
+    private final long nativeBytes;
+    private final long buildMillis;
+
+    private ModelSizeEstimate(SchedulingEngine engine, long variables, long literals, long constraints,
+                              long bytesPerItem, long nanosPerItem) {
+        this.engine = engine;
+        this.variables = variables;
+        this.literals = literals;
+        this.constraints = constraints;
+        this.heapBytes = (variables + constraints) * bytesPerItem;
+        this.nativeBytes = (variables + constraints) * NATIVE_BYTES_PER_ITEM;
+        this.buildMillis = (variables + constraints) * nanosPerItem / 1_000_000;
+    }
+
+    public static ModelSizeEstimate of(SchedulingEngine engine, SchedulingInstance instance) {
+        return of(engine, instance, new SolverConfig());
+    }
+
+    // The config only matters for LNS and DISTRIBUTED, which run one sub-model per worker thread
+    public static ModelSizeEstimate of(SchedulingEngine engine, SchedulingInstance instance, SolverConfig config) {
+        long numPieces = instance.getNumPieces();
+        int numMachines = instance.getNumMachines();
+
+        switch (engine) {
+            case BASE, A, B, C, BULK, LEXICOGRAPHIC -> {
+                // Per machine and piece: start, end, presence, the interval and its link, slot membership,
+                // and per usable slot one literal with two enforced bounds
+                long usableSlots = usableSlots(instance);
+                long variables = numPieces * (3L * numMachines + usableSlots) + 1;
+                long literals = numPieces * (numMachines + usableSlots);
+                long constraints = numPieces * (3L * numMachines + 2 * usableSlots) + numPieces + numMachines + 1;
+                return engine == SchedulingEngine.BULK || engine == SchedulingEngine.LEXICOGRAPHIC
+                        ? new ModelSizeEstimate(engine, variables, literals, constraints, BULK_BYTES_PER_ITEM, BULK_NANOS_PER_ITEM)
+                        : new ModelSizeEstimate(engine, variables, literals, constraints, WRAPPED_BYTES_PER_ITEM, WRAPPED_NANOS_PER_ITEM);
+            }
+            case RESUMABLE -> {
+                // No slot literal per piece, only per machine to map its end back to wall-clock time
+                long slots = instance.getNumSlots();
+                long variables = 3 * numPieces * numMachines + 3L * numMachines + slots + 1;
+                long literals = numPieces * numMachines + numMachines + slots;
+                long constraints = 3 * numPieces * numMachines + numMachines + numPieces + 4L * numMachines + 2 * slots;
+                return new ModelSizeEstimate(engine, variables, literals, constraints, WRAPPED_BYTES_PER_ITEM, WRAPPED_NANOS_PER_ITEM);
+            }
+            case LNS, DISTRIBUTED -> {
+                // One sub-model per thread at a time, the incumbent itself is a start per piece. A neighbourhood
+                // frees at most MAX_FREE_PIECES, each gets a task on every one of its machines. The distributed
+                // coordinator only runs the reconciliation LNS, the groups live in the workers
+                long maxSlots = 0;
+                for (int m = 0; m < numMachines; m++) {
+                    maxSlots = Math.max(maxSlots, instance.getProductiveIntervals()[m].length);
+                }
+                long tasks = (long) Math.min(numMachines, LnsScheduling.MAX_MACHINES) * LnsScheduling.MAX_FREE_PIECES;
+                long threads = config.getNumWorkers() > 0 ? config.getNumWorkers() : Runtime.getRuntime().availableProcessors();
+                long variables = threads * tasks * (3 + maxSlots) + numPieces;
+                long literals = threads * tasks * (1 + maxSlots);
+                long constraints = threads * tasks * (5 + 2 * maxSlots);
+                return new ModelSizeEstimate(engine, variables, literals, constraints, BULK_BYTES_PER_ITEM, BULK_NANOS_PER_ITEM);
+            }
+            default -> throw new IllegalArgumentException("No size model for engine " + engine);
+        }
+    }
+
+    // Slots long enough for at least one piece, the others are dropped by preprocessIntervals
+    private static long usableSlots(SchedulingInstance instance) {
+        long usable = 0;
+        ZonedDateTime[][][] productiveIntervals = instance.getProductiveIntervals();
+        for (int m = 0; m < productiveIntervals.length; m++) {
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                if (Duration.between(interval[0], interval[1]).getSeconds() >= instance.getCycleTimes()[m]) {
+                    usable++;
+                }
+            }
+        }
+        return usable;
+    }
+
+    public boolean fits(long memoryBudgetBytes, long buildTimeBudgetMillis) {
+        return getTotalBytes() <= memoryBudgetBytes && buildMillis <= buildTimeBudgetMillis;
+    }
+
+    public SchedulingEngine getEngine() {
+        return engine;
+    }
+
+    public long getVariables() {
+        return variables;
+    }
+
+    public long getLiterals() {
+        return literals;
+    }
+
+    public long getConstraints() {
+        return constraints;
+    }
+
+    // Variables plus constraints, the unit the server sizes its workers by
+    public long getSize() {
+        return variables + constraints;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    public long getNativeBytes() {
+        return nativeBytes;
+    }
+
+    public long getTotalBytes() {
+        return heapBytes + nativeBytes;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    @Override
+    public String toString() {
+        return engine + ": " + variables + " variables (" + literals + " literals), " + constraints + " constraints, ~"
+                + getTotalBytes() / (1024 * 1024) + " MiB, ~" + buildMillis + " ms to build";
+    }
+}
@@ -1,6 +1,5 @@
 package es.emi;
 
-import com.google.ortools.Loader;
 import com.google.ortools.sat.*;
 
 import java.time.LocalDate;
@@ -14,12 +13,25 @@ import java.util.List;
 
 public class MultiMachineSchedulingA {
 
-    public static void solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, int maxEnd) {
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, int maxEnd) {
+        ScheduleResult result = solver(numMachines, numPieces, cycleTimes, productiveIntervals, maxEnd, SolverConfig.defaults());
+        result.print();
+        return result;
+    }
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, int maxEnd,
+                                        SolverConfig config) {
 
         // TODO: Reference point must be the minimum start date time
         final ZonedDateTime REFERENCE_POINT = ZonedDateTime.of(LocalDate.of(2024, 8, 7), LocalTime.of(0, 0), ZoneId.of("UTC"));
 
-        Loader.loadNativeLibraries();
+        NativeRuntime.load();
+
+        // Capacity pre-check, infeasible requests return before any model is built
+        CapacityCheck capacity = CapacityCheck.forSlots(numPieces, cycleTimes, productiveIntervals, REFERENCE_POINT, maxEnd);
+        if (!capacity.isFeasible()) {
+            return ScheduleResult.rejected(capacity, REFERENCE_POINT.toEpochSecond());
+        }
 
         // Convert ZonedDateTime to integer seconds from a reference (min start time interval starts from 0)
         int[][][] productiveIntervalsInSeconds = new int[numMachines][][];
@@ -124,32 +136,10 @@ public class MultiMachineSchedulingA {
 
         // Solve the model
         CpSolver solver = new CpSolver();
-        solver.getParameters().setLogSearchProgress(true);
-        CpSolverStatus status = solver.solve(model);
-
-        // Display results
-        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
-
-            System.out.println("Solution found:");
+        CpSolverStatus status = config.solve(solver, model);
 
-            for (int m = 0; m < numMachines; m++) {
-                for (int i = 0; i < numPieces; i++) {
-                    if (solver.booleanValue(isTaskActive[m][i])) {
-
-                        // Denormalize dates
-                        ZonedDateTime start = REFERENCE_POINT.plusSeconds(solver.value(startTimes[m][i]));
-                        ZonedDateTime end = REFERENCE_POINT.plusSeconds(solver.value(endTimes[m][i]));
-                        System.out.printf("Machine %d, Task %d: Start at %s, End at %s%n", m, i, start, end);
-                    }
-                }
-            }
-
-            ZonedDateTime makespanEnd = REFERENCE_POINT.plusSeconds(solver.value(makespan));
-            System.out.println("Makespan: " + makespanEnd);
-
-        } else {
-            System.out.println("No feasible solution found.");
-        }
+        // Decode into primitive arrays, printing is left to the caller
+        return ScheduleResult.fromSolver(status, solver, startTimes, endTimes, isTaskActive, REFERENCE_POINT);
     }
 }
 
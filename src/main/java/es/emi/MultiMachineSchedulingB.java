@@ -1,6 +1,5 @@
 package es.emi;
 
-import com.google.ortools.Loader;
 import com.google.ortools.sat.*;
 
 import java.time.LocalDate;
@@ -14,11 +13,24 @@ import java.util.List;
 
 public class MultiMachineSchedulingB {
 
-    public static void solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, int maxEnd) {
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, int maxEnd) {
+        ScheduleResult result = solver(numMachines, numPieces, cycleTimes, productiveIntervals, maxEnd, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, int maxEnd,
+                                        SolverConfig config) {
 
         // Reference point
         final ZonedDateTime REFERENCE_POINT = ZonedDateTime.of(LocalDate.of(2024, 8, 7), LocalTime.of(0, 0), ZoneId.of("UTC"));
-        Loader.loadNativeLibraries();
+        NativeRuntime.load();
+
+        // Capacity pre-check, infeasible requests return before any model is built
+        CapacityCheck capacity = CapacityCheck.forSlots(numPieces, cycleTimes, productiveIntervals, REFERENCE_POINT, maxEnd);
+        if (!capacity.isFeasible()) {
+            return ScheduleResult.rejected(capacity, REFERENCE_POINT.toEpochSecond());
+        }
 
         // Convert productive intervals and filter them
         int[][][] productiveIntervalsInSeconds = preprocessIntervals(numMachines, cycleTimes, productiveIntervals, REFERENCE_POINT);
@@ -36,19 +48,18 @@ public class MultiMachineSchedulingB {
         // Add constraints
         addConstraints(model, numMachines, numPieces, productiveIntervalsInSeconds, tasks, startTimes, endTimes, isTaskActive);
 
-        // Add objective: minimize makespan
-        addObjective(model, maxEnd, endTimes);
+        // Add objective: minimize makespan, never below the capacity bound
+        long lowerBound = MakespanBound.slotBound(cycleTimes, productiveIntervalsInSeconds, numPieces);
+        addObjective(model, maxEnd, lowerBound, endTimes);
 
         // Parallel processing
         CpSolver solver = new CpSolver();
-        solver.getParameters().setNumWorkers(Runtime.getRuntime().availableProcessors());
-        solver.getParameters().setLogSearchProgress(true);
 
         // Solve
-        CpSolverStatus status = solver.solve(model);
+        CpSolverStatus status = config.solve(solver, model);
 
-        // Display results
-        displayResults(status, solver, numMachines, numPieces, startTimes, endTimes, isTaskActive, REFERENCE_POINT);
+        // Decode into primitive arrays, printing is left to the caller
+        return ScheduleResult.fromSolver(status, solver, startTimes, endTimes, isTaskActive, REFERENCE_POINT);
     }
 
     private static int[][][] preprocessIntervals(int numMachines, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, ZonedDateTime referencePoint) {
@@ -110,30 +121,11 @@ public class MultiMachineSchedulingB {
         }
     }
 
-    private static void addObjective(CpModel model, int maxEnd, IntVar[][] endTimes) {
-        IntVar makespan = model.newIntVar(0, maxEnd, "makespan");
+    private static void addObjective(CpModel model, int maxEnd, long lowerBound, IntVar[][] endTimes) {
+        // Once the incumbent reaches the bound the search is done
+        IntVar makespan = model.newIntVar(Math.min(Math.max(lowerBound, 0), maxEnd), maxEnd, "makespan");
         IntVar[] allEndTimes = Arrays.stream(endTimes).flatMap(Arrays::stream).toArray(IntVar[]::new);
         model.addMaxEquality(makespan, allEndTimes);
         model.minimize(makespan);
     }
-
-    private static void displayResults(CpSolverStatus status, CpSolver solver, int numMachines, int numPieces,
-                                       IntVar[][] startTimes, IntVar[][] endTimes, BoolVar[][] isTaskActive, ZonedDateTime referencePoint) {
-
-        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
-            System.out.println("Solution found:");
-            for (int m = 0; m < numMachines; m++) {
-                for (int i = 0; i < numPieces; i++) {
-                    if (solver.booleanValue(isTaskActive[m][i])) {
-                        ZonedDateTime start = referencePoint.plusSeconds(solver.value(startTimes[m][i]));
-                        ZonedDateTime end = referencePoint.plusSeconds(solver.value(endTimes[m][i]));
-                        System.out.printf("Machine %d, Task %d: Start at %s, End at %s%n", m, i, start, end);
-                    }
-                }
-            }
-
-        } else {
-            System.out.println("No feasible solution found.");
-        }
-    }
 }
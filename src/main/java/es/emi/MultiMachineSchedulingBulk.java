@@ -0,0 +1,146 @@
+package es.emi;
+
+import com.google.ortools.sat.*;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Same formulation as MultiMachineSchedulingC, emitted through BulkModelBuilder from primitive
+// index arrays. Names only exist with SolverConfig.setDebugNames(true).
+public class MultiMachineSchedulingBulk {
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals) {
+        ScheduleResult result = solver(numMachines, numPieces, cycleTimes, productiveIntervals, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                        SolverConfig config) {
+        NativeRuntime.load();
+
+        ZonedDateTime referencePoint = findEarliestStart(productiveIntervals);
+        int maxEnd = findLatestEnd(productiveIntervals, referencePoint);
+
+        // Capacity pre-check, infeasible requests return before any model is built
+        CapacityCheck capacity = CapacityCheck.forSlots(numPieces, cycleTimes, productiveIntervals, referencePoint, maxEnd);
+        if (!capacity.isFeasible()) {
+            return ScheduleResult.rejected(capacity, referencePoint.toEpochSecond());
+        }
+        int[][][] productiveIntervalsInSeconds = preprocessIntervals(numMachines, cycleTimes, productiveIntervals, referencePoint);
+
+        CpModel model = new CpModel();
+        BulkModelBuilder builder = new BulkModelBuilder(model, config.isDebugNames());
+
+        // Variable blocks, task (m, i) is at offset m * numPieces + i
+        int numTasks = numMachines * numPieces;
+        int starts = builder.newVariables(numTasks, 0, maxEnd);
+        int ends = builder.newVariables(numTasks, 0, maxEnd);
+        int actives = builder.newVariables(numTasks, 0, 1);
+        if (builder.isDebug()) {
+            for (int m = 0; m < numMachines; m++) {
+                for (int i = 0; i < numPieces; i++) {
+                    builder.name(starts + m * numPieces + i, "start_machine_", m, i);
+                    builder.name(ends + m * numPieces + i, "end_machine_", m, i);
+                    builder.name(actives + m * numPieces + i, "isActive_machine_", m, i);
+                }
+            }
+        }
+
+        int[] intervals = new int[numPieces];
+        for (int m = 0; m < numMachines; m++) {
+            int[][] slots = productiveIntervalsInSeconds[m];
+            int[] membership = new int[slots.length + 1];
+            long[] membershipCoeffs = new long[slots.length + 1];
+            Arrays.fill(membershipCoeffs, 1);
+            membershipCoeffs[slots.length] = -1;
+
+            for (int i = 0; i < numPieces; i++) {
+                int task = m * numPieces + i;
+                intervals[i] = builder.addOptionalInterval(starts + task, ends + task, cycleTimes[m], actives + task);
+
+                // Inside exactly one productive interval when active
+                int inInterval = builder.newVariables(slots.length, 0, 1);
+                for (int j = 0; j < slots.length; j++) {
+                    builder.addBounds(starts + task, slots[j][0], maxEnd, inInterval + j);
+                    builder.addBounds(ends + task, 0, slots[j][1], inInterval + j);
+                    membership[j] = inInterval + j;
+                }
+                membership[slots.length] = actives + task;
+                builder.addLinear(membership, membershipCoeffs, 0, 0);
+            }
+
+            builder.addNoOverlap(intervals);
+        }
+
+        // Ensure each piece is assigned to exactly one machine
+        int[] assignment = new int[numMachines];
+        for (int i = 0; i < numPieces; i++) {
+            for (int m = 0; m < numMachines; m++) {
+                assignment[m] = actives + m * numPieces + i;
+            }
+            builder.addExactlyOne(assignment);
+        }
+
+        // Objective: minimize makespan, never below the capacity bound
+        long lowerBound = MakespanBound.slotBound(cycleTimes, productiveIntervalsInSeconds, numPieces);
+        int makespan = builder.newVariable(Math.min(Math.max(lowerBound, 0), maxEnd), maxEnd);
+        int[] allEnds = new int[numTasks];
+        Arrays.setAll(allEnds, task -> ends + task);
+        builder.addMaxEquality(makespan, allEnds);
+        builder.minimize(makespan);
+
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = config.solve(solver, model);
+
+        // Decode from the response values by index
+        ScheduleResult.Builder result = new ScheduleResult.Builder(numMachines);
+        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
+            CpSolverResponse response = solver.response();
+            for (int task = 0; task < numTasks; task++) {
+                if (response.getSolution(actives + task) == 1) {
+                    result.addTask(task / numPieces, task % numPieces, response.getSolution(starts + task), response.getSolution(ends + task));
+                }
+            }
+            result.setLowerBound((long) Math.ceil(solver.bestObjectiveBound()));
+        }
+
+        return result.build(status, referencePoint.toEpochSecond(), solver.wallTime());
+    }
+
+    private static ZonedDateTime findEarliestStart(ZonedDateTime[][][] productiveIntervals) {
+        return Arrays.stream(productiveIntervals)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    private static int findLatestEnd(ZonedDateTime[][][] productiveIntervals, ZonedDateTime referencePoint) {
+        return Arrays.stream(productiveIntervals)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .mapToInt(interval -> (int) ChronoUnit.SECONDS.between(referencePoint, interval))
+                .max()
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    private static int[][][] preprocessIntervals(int numMachines, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, ZonedDateTime referencePoint) {
+        int[][][] productiveIntervalsInSeconds = new int[numMachines][][];
+        for (int m = 0; m < numMachines; m++) {
+            List<int[]> validIntervals = new ArrayList<>();
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                int start = (int) ChronoUnit.SECONDS.between(referencePoint, interval[0]);
+                int end = (int) ChronoUnit.SECONDS.between(referencePoint, interval[1]);
+                if (end - start >= cycleTimes[m]) {
+                    validIntervals.add(new int[]{start, end});
+                }
+            }
+            productiveIntervalsInSeconds[m] = validIntervals.toArray(new int[0][]);
+        }
+        return productiveIntervalsInSeconds;
+    }
+}
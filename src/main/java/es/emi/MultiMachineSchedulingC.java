@@ -1,6 +1,5 @@
 package es.emi;
 
-import com.google.ortools.Loader;
 import com.google.ortools.sat.*;
 
 import java.time.ZonedDateTime;
@@ -11,13 +10,26 @@ import java.util.List;
 
 public class MultiMachineSchedulingC {
 
-    public static void solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals) {
-        Loader.loadNativeLibraries();
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals) {
+        ScheduleResult result = solver(numMachines, numPieces, cycleTimes, productiveIntervals, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                        SolverConfig config) {
+        NativeRuntime.load();
 
         // Determine REFERENCE_POINT and maxEnd dynamically
         ZonedDateTime referencePoint = findEarliestStart(productiveIntervals);
         int maxEnd = findLatestEnd(productiveIntervals, referencePoint);
 
+        // Capacity pre-check, infeasible requests return before any model is built
+        CapacityCheck capacity = CapacityCheck.forSlots(numPieces, cycleTimes, productiveIntervals, referencePoint, maxEnd);
+        if (!capacity.isFeasible()) {
+            return ScheduleResult.rejected(capacity, referencePoint.toEpochSecond());
+        }
+
         // Convert productive intervals to seconds relative to REFERENCE_POINT
         int[][][] productiveIntervalsInSeconds = preprocessIntervals(numMachines, cycleTimes, productiveIntervals, referencePoint);
 
@@ -34,19 +46,18 @@ public class MultiMachineSchedulingC {
         // Add constraints
         addConstraints(model, numMachines, numPieces, productiveIntervalsInSeconds, tasks, startTimes, endTimes, isTaskActive);
 
-        // Add objective: minimize makespan
-        IntVar makespan = addObjective(model, maxEnd, endTimes);
+        // Add objective: minimize makespan, never below the capacity bound
+        long lowerBound = MakespanBound.slotBound(cycleTimes, productiveIntervalsInSeconds, numPieces);
+        addObjective(model, maxEnd, lowerBound, endTimes);
 
         // Parallel processing
         CpSolver solver = new CpSolver();
-        solver.getParameters().setNumWorkers(Runtime.getRuntime().availableProcessors());
-        solver.getParameters().setLogSearchProgress(true);
 
         // Solve
-        CpSolverStatus status = solver.solve(model);
+        CpSolverStatus status = config.solve(solver, model);
 
-        // Display results
-        displayResults(status, solver, numMachines, numPieces, startTimes, endTimes, isTaskActive, referencePoint, makespan);
+        // Decode into primitive arrays, printing is left to the caller
+        return ScheduleResult.fromSolver(status, solver, startTimes, endTimes, isTaskActive, referencePoint);
     }
 
     private static ZonedDateTime findEarliestStart(ZonedDateTime[][][] productiveIntervals) {
@@ -124,36 +135,12 @@ public class MultiMachineSchedulingC {
         }
     }
 
-    private static IntVar addObjective(CpModel model, int maxEnd, IntVar[][] endTimes) {
-        IntVar makespan = model.newIntVar(0, maxEnd, "makespan");
+    private static IntVar addObjective(CpModel model, int maxEnd, long lowerBound, IntVar[][] endTimes) {
+        // Once the incumbent reaches the bound the search is done
+        IntVar makespan = model.newIntVar(Math.min(Math.max(lowerBound, 0), maxEnd), maxEnd, "makespan");
         IntVar[] allEndTimes = Arrays.stream(endTimes).flatMap(Arrays::stream).toArray(IntVar[]::new);
         model.addMaxEquality(makespan, allEndTimes);
         model.minimize(makespan);
         return makespan;
     }
-
-    private static void displayResults(CpSolverStatus status, CpSolver solver, int numMachines, int numPieces,
-                                       IntVar[][] startTimes, IntVar[][] endTimes, BoolVar[][] isTaskActive,
-                                       ZonedDateTime referencePoint, IntVar makespan) {
-        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
-
-            System.out.println("Solution found:");
-
-            for (int m = 0; m < numMachines; m++) {
-                for (int i = 0; i < numPieces; i++) {
-                    if (solver.booleanValue(isTaskActive[m][i])) {
-                        ZonedDateTime start = referencePoint.plusSeconds(solver.value(startTimes[m][i]));
-                        ZonedDateTime end = referencePoint.plusSeconds(solver.value(endTimes[m][i]));
-                        System.out.printf("Machine %d, Task %d: Start at %s, End at %s%n", m, i, start, end);
-                    }
-                }
-            }
-
-            ZonedDateTime makespanEnd = referencePoint.plusSeconds(solver.value(makespan));
-            System.out.println("Makespan: " + makespanEnd);
-        } else {
-            System.out.println("No feasible solution found.");
-        }
-    }
 }
-
@@ -0,0 +1,71 @@
+package es.emi;
+
+import com.google.ortools.sat.CpSolverStatus;
+
+// Schedule of a routing through several stages: one ScheduleResult per stage, all on the same reference
+// point, and piece p is the same part at every stage, so its task at stage s + 1 starts after its task at
+// stage s ends.
+public class MultiStageResult {
+
+    private final CpSolverStatus status;
+    private final ScheduleResult[] stages;
+    private final int bottleneck;
+    private final long lowerBound;
+    private final double wallTime;
+
+    MultiStageResult(CpSolverStatus status, ScheduleResult[] stages, int bottleneck, long lowerBound, double wallTime) {
+        this.status = status;
+        this.stages = stages;
+        this.bottleneck = bottleneck;
+        this.lowerBound = lowerBound;
+        this.wallTime = wallTime;
+    }
+
+    public boolean hasSolution() {
+        return status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE;
+    }
+
+    public CpSolverStatus getStatus() {
+        return status;
+    }
+
+    public int getNumStages() {
+        return stages.length;
+    }
+
+    // Empty schedules when there is no solution
+    public ScheduleResult getStage(int stage) {
+        return stages[stage];
+    }
+
+    // Stage the decomposition scheduled first, -1 when it never got that far
+    public int getBottleneck() {
+        return bottleneck;
+    }
+
+    // End of the last stage in seconds from the reference point
+    public long getMakespan() {
+        return stages[stages.length - 1].getMakespan();
+    }
+
+    public long getLowerBound() {
+        return Math.min(lowerBound, getMakespan());
+    }
+
+    public double getWallTime() {
+        return wallTime;
+    }
+
+    public void print() {
+        if (!hasSolution()) {
+            System.out.println("No feasible solution found.");
+            return;
+        }
+        for (int s = 0; s < stages.length; s++) {
+            System.out.println("Stage " + s + (s == bottleneck ? " (bottleneck)" : "") + ":");
+            stages[s].print();
+        }
+        System.out.println("Routing makespan: " + stages[0].toDateTime(getMakespan()));
+        System.out.println("Routing lower bound: " + stages[0].toDateTime(getLowerBound()));
+    }
+}
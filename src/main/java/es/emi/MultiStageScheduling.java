@@ -0,0 +1,625 @@
+package es.emi;
+
+import com.google.ortools.sat.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Routing through several stages (pressing, curing, inspection ...), each with its own machine pool and
+// calendars. Every piece runs once per stage, in stage order. A joint model of all stages is far too large
+// for thousands of pieces, so the stages are decomposed:
+//   1. a greedy pass through the stages gives a feasible routing and the horizon
+//   2. the bottleneck, the stage with the largest capacity bound, is solved first with release windows
+//      from the stage before it and due windows from the stage after it
+//   3. the stages after it are solved forward, releases from their new predecessor
+//   4. the stages before it are solved backward, dues from their new successor
+//   5. a short joint solve of all stages, hinted with the decomposition, may still shorten the routing
+// Pieces are identical within a stage, so a stage is modelled as counts per machine slot like
+// FamilyScheduling. The pieces move between stages in groups of consecutive pieces: a group is released
+// to the next stage once all of it is done there. In a slot the groups run back to back in group order
+// after a single wait at the slot start, which is what the release windows need.
+public class MultiStageScheduling {
+
+    private static final double DEFAULT_TIME_LIMIT_SECONDS = 60;
+    // Groups of pieces travelling together between stages, more groups means less waiting and larger models
+    private static final int DEFAULT_GROUPS = 16;
+    // The joint solve is skipped when it would need more count variables than this
+    private static final long MAX_JOINT_VARIABLES = 200_000;
+    // Shares of the time limit, the joint solve gets whatever the stages leave
+    private static final double BOTTLENECK_SHARE = 0.4;
+    private static final double JOINT_SHARE = 0.25;
+
+    public static MultiStageResult solver(int numPieces, int[][] cycleTimes, ZonedDateTime[][][][] productiveIntervals) {
+        MultiStageResult result = solver(numPieces, cycleTimes, productiveIntervals, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    // cycleTimes[stage][machine], productiveIntervals[stage][machine][slot] = {start, end}
+    public static MultiStageResult solver(int numPieces, int[][] cycleTimes, ZonedDateTime[][][][] productiveIntervals,
+                                          SolverConfig config) {
+        NativeRuntime.load();
+        long startNanos = System.nanoTime();
+
+        int numStages = cycleTimes.length;
+        if (numStages == 0 || productiveIntervals.length != numStages) {
+            throw new IllegalArgumentException("Every stage needs cycle times and calendars, got " + numStages
+                    + " and " + productiveIntervals.length + " stages");
+        }
+
+        ZonedDateTime referencePoint = findEarliestStart(productiveIntervals);
+        long reference = referencePoint.toEpochSecond();
+
+        // A stage that cannot hold the pieces at all rejects the routing before anything is built
+        for (int s = 0; s < numStages; s++) {
+            CapacityCheck capacity = CapacityCheck.forSlots(numPieces, cycleTimes[s], productiveIntervals[s], referencePoint, Long.MAX_VALUE);
+            if (!capacity.isFeasible()) {
+                return empty(CpSolverStatus.INFEASIBLE, numStages, cycleTimes, reference, -1, startNanos);
+            }
+        }
+
+        int[][][][] slots = new int[numStages][][][];
+        for (int s = 0; s < numStages; s++) {
+            slots[s] = preprocessIntervals(cycleTimes[s], productiveIntervals[s], referencePoint);
+        }
+
+        int numGroups = Math.min(DEFAULT_GROUPS, numPieces);
+        int[] groupStart = new int[numGroups + 1];
+        for (int g = 0; g <= numGroups; g++) {
+            groupStart[g] = (int) ((long) g * numPieces / numGroups);
+        }
+
+        // Greedy routing, every stage takes the groups as soon as the stage before releases them
+        StagePlan[] plans = new StagePlan[numStages];
+        long[] release = new long[numGroups];
+        for (int s = 0; s < numStages; s++) {
+            plans[s] = StagePlan.greedy(cycleTimes[s], slots[s], groupStart, release);
+            if (plans[s] == null) {
+                return empty(CpSolverStatus.UNKNOWN, numStages, cycleTimes, reference, -1, startNanos);
+            }
+            release = plans[s].completions(cycleTimes[s], slots[s]);
+        }
+
+        // Bottleneck and routing bound: no stage finishes before its own capacity bound, and the last
+        // pieces still have to pass the stages after it
+        int bottleneck = 0;
+        long[] stageBounds = new long[numStages];
+        long lowerBound = 0;
+        for (int s = numStages - 1, tail = 0; s >= 0; s--) {
+            stageBounds[s] = MakespanBound.slotBound(cycleTimes[s], slots[s], numPieces);
+            lowerBound = Math.max(lowerBound, stageBounds[s] + tail);
+            tail += Arrays.stream(cycleTimes[s]).min().orElse(0);
+        }
+        for (int s = 1; s < numStages; s++) {
+            if (stageBounds[s] > stageBounds[bottleneck]) {
+                bottleneck = s;
+            }
+        }
+
+        double timeLimit = config.getMaxTimeInSeconds() > 0 ? config.getMaxTimeInSeconds() : DEFAULT_TIME_LIMIT_SECONDS;
+        long deadline = startNanos + (long) (timeLimit * 1e9);
+        double bottleneckTime = numStages == 1 ? timeLimit : timeLimit * BOTTLENECK_SHARE;
+        double stageTime = numStages == 1 ? 0 : timeLimit * (1 - BOTTLENECK_SHARE - JOINT_SHARE) / (numStages - 1);
+        SolveLog log = config.getLog();
+        if (log != null) {
+            log.debug("multi-stage: greedy routing ends at " + plans[numStages - 1].makespan(cycleTimes[numStages - 1], slots[numStages - 1])
+                    + " s, bottleneck stage " + bottleneck + ", bound " + lowerBound + " s");
+        }
+
+        // Bottleneck first, its windows come from the greedy stages around it, which therefore stay feasible
+        plans[bottleneck] = solveStage(bottleneck, cycleTimes, slots, groupStart, plans, bottleneck, bottleneckTime, deadline, config);
+        for (int s = bottleneck + 1; s < numStages; s++) {
+            plans[s] = solveStage(s, cycleTimes, slots, groupStart, plans, bottleneck, stageTime, deadline, config);
+        }
+        for (int s = bottleneck - 1; s >= 0; s--) {
+            plans[s] = solveStage(s, cycleTimes, slots, groupStart, plans, bottleneck, stageTime, deadline, config);
+        }
+
+        CpSolverStatus status = CpSolverStatus.FEASIBLE;
+        long makespan = plans[numStages - 1].makespan(cycleTimes[numStages - 1], slots[numStages - 1]);
+        if (log != null) {
+            log.debug("multi-stage: decomposition ends at " + makespan + " s");
+        }
+
+        double remaining = (deadline - System.nanoTime()) / 1e9;
+        if (numStages > 1 && makespan > lowerBound && remaining > 0) {
+            // Optimal for the grouped model is not optimal for the routing, only the bound proves that
+            solveJoint(cycleTimes, slots, groupStart, plans, makespan, remaining, config);
+            makespan = plans[numStages - 1].makespan(cycleTimes[numStages - 1], slots[numStages - 1]);
+        }
+        if (makespan <= lowerBound) {
+            status = CpSolverStatus.OPTIMAL;
+        }
+
+        ScheduleResult[] stages = new ScheduleResult[numStages];
+        double wallTime = (System.nanoTime() - startNanos) / 1e9;
+        for (int s = 0; s < numStages; s++) {
+            ScheduleResult.Builder builder = new ScheduleResult.Builder(cycleTimes[s].length);
+            plans[s].addTasks(builder, cycleTimes[s], slots[s], groupStart);
+            stages[s] = builder.build(status, reference, wallTime);
+        }
+        checkRouting(stages, cycleTimes, productiveIntervals, numPieces);
+        return new MultiStageResult(status, stages, bottleneck, lowerBound, wallTime);
+    }
+
+    // Windows of stage s from its neighbours: releases are the group completions of the stage before, dues
+    // the first starts of the stage after. The current plan meets them and is the hint and the fallback.
+    private static StagePlan solveStage(int s, int[][] cycleTimes, int[][][][] slots, int[] groupStart, StagePlan[] plans,
+                                        int bottleneck, double seconds, long deadline, SolverConfig config) {
+        int numGroups = groupStart.length - 1;
+        long[] release = s > 0 ? plans[s - 1].completions(cycleTimes[s - 1], slots[s - 1]) : new long[numGroups];
+        long[] due = s + 1 < plans.length ? plans[s + 1].firstStarts(cycleTimes[s + 1], slots[s + 1]) : null;
+        long horizon = plans[plans.length - 1].makespan(cycleTimes[plans.length - 1], slots[plans.length - 1]);
+
+        double limit = Math.min(seconds, (deadline - System.nanoTime()) / 1e9);
+        if (limit <= 0) {
+            return plans[s];
+        }
+
+        CpModel model = new CpModel();
+        StageModel stage = new StageModel(model, "s" + s, cycleTimes[s], slots[s], groupStart, release, due, horizon, false);
+        stage.hint(model, plans[s], cycleTimes[s], slots[s]);
+
+        // Makespan first, then the group completions, which are the next stage's releases
+        IntVar[] objective = new IntVar[numGroups + 1];
+        long[] weights = new long[numGroups + 1];
+        objective[0] = stage.makespan;
+        weights[0] = numGroups;
+        for (int g = 0; g < numGroups; g++) {
+            objective[g + 1] = stage.completions[g];
+            weights[g + 1] = 1;
+        }
+        model.minimize(LinearExpr.weightedSum(objective, weights));
+
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = copyWithTimeLimit(config, limit).solve(solver, model);
+        if (config.getLog() != null) {
+            config.getLog().debug("multi-stage: stage " + s + (s == bottleneck ? " (bottleneck) " : " ") + status);
+        }
+        if (status != CpSolverStatus.OPTIMAL && status != CpSolverStatus.FEASIBLE) {
+            return plans[s];
+        }
+        return stage.decode(solver);
+    }
+
+    // All stages in one model, linked group by group, starting from the decomposition. Replaces the plans
+    // when it finds a shorter routing.
+    private static void solveJoint(int[][] cycleTimes, int[][][][] slots, int[] groupStart, StagePlan[] plans,
+                                             long makespan, double seconds, SolverConfig config) {
+        int numStages = plans.length;
+        int numGroups = groupStart.length - 1;
+
+        long variables = 0;
+        for (int[][][] stageSlots : slots) {
+            for (int[][] machineSlots : stageSlots) {
+                for (int[] slot : machineSlots) {
+                    if (slot[0] < makespan) {
+                        variables += numGroups;
+                    }
+                }
+            }
+        }
+        if (variables > MAX_JOINT_VARIABLES) {
+            if (config.getLog() != null) {
+                config.getLog().debug("multi-stage: joint model skipped, " + variables + " count variables");
+            }
+            return;
+        }
+
+        CpModel model = new CpModel();
+        StageModel[] stages = new StageModel[numStages];
+        for (int s = 0; s < numStages; s++) {
+            stages[s] = new StageModel(model, "s" + s, cycleTimes[s], slots[s], groupStart, new long[numGroups], null, makespan, s > 0);
+            stages[s].hint(model, plans[s], cycleTimes[s], slots[s]);
+            if (s > 0) {
+                stages[s].releaseAfter(model, stages[s - 1].completions);
+            }
+        }
+        model.minimize(stages[numStages - 1].makespan);
+
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = copyWithTimeLimit(config, seconds).solve(solver, model);
+        if (config.getLog() != null) {
+            config.getLog().debug("multi-stage: joint " + status);
+        }
+        if ((status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE)
+                && solver.value(stages[numStages - 1].makespan) < makespan) {
+            for (int s = 0; s < numStages; s++) {
+                plans[s] = stages[s].decode(solver);
+            }
+        }
+    }
+
+    // Every stage must be a valid schedule on its own and every piece must leave a stage before it enters
+    // the next one
+    private static void checkRouting(ScheduleResult[] stages, int[][] cycleTimes, ZonedDateTime[][][][] productiveIntervals, int numPieces) {
+        long[] previousEnds = null;
+        for (int s = 0; s < stages.length; s++) {
+            ScheduleValidator.Report report = ScheduleValidator.validate(stages[s], productiveIntervals[s], cycleTimes[s], numPieces, false);
+            if (!report.isValid()) {
+                throw new IllegalStateException("Stage " + s + " is invalid: " + report);
+            }
+            long[] ends = new long[numPieces];
+            for (int m = 0; m < stages[s].getNumMachines(); m++) {
+                int[] pieces = stages[s].getPieces(m);
+                for (int k = 0; k < pieces.length; k++) {
+                    if (previousEnds != null && stages[s].getStarts(m)[k] < previousEnds[pieces[k]]) {
+                        throw new IllegalStateException("Piece " + pieces[k] + " starts stage " + s + " before it left stage " + (s - 1));
+                    }
+                    ends[pieces[k]] = stages[s].getEnds(m)[k];
+                }
+            }
+            previousEnds = ends;
+        }
+    }
+
+    private static MultiStageResult empty(CpSolverStatus status, int numStages, int[][] cycleTimes, long reference, int bottleneck,
+                                          long startNanos) {
+        double wallTime = (System.nanoTime() - startNanos) / 1e9;
+        ScheduleResult[] stages = new ScheduleResult[numStages];
+        for (int s = 0; s < numStages; s++) {
+            stages[s] = new ScheduleResult.Builder(cycleTimes[s].length).build(status, reference, wallTime);
+        }
+        return new MultiStageResult(status, stages, bottleneck, 0, wallTime);
+    }
+
+    private static SolverConfig copyWithTimeLimit(SolverConfig config, double seconds) {
+        SolverConfig copy = config.copy();
+        copy.setMaxTimeInSeconds(seconds);
+        return copy;
+    }
+
+    // Counts of one stage: counts[m][j][g] pieces of group g in slot j of machine m, the slot's block of
+    // pieces starting waits[m][j] after the slot start
+    private static final class StagePlan {
+
+        private final int numGroups;
+        private final int[][][] counts;
+        private final long[][] waits;
+
+        private StagePlan(int[][][] slots, int numGroups) {
+            this.numGroups = numGroups;
+            counts = new int[slots.length][][];
+            waits = new long[slots.length][];
+            for (int m = 0; m < slots.length; m++) {
+                counts[m] = new int[slots[m].length][numGroups];
+                waits[m] = new long[slots[m].length];
+            }
+        }
+
+        // Groups in order, each piece on the machine where it finishes first. Waiting for a release
+        // moves the slot's whole block later, which keeps the block contiguous. Null when a piece fits nowhere.
+        static StagePlan greedy(int[] cycleTimes, int[][][] slots, int[] groupStart, long[] release) {
+            int numMachines = slots.length;
+            int numGroups = groupStart.length - 1;
+            StagePlan plan = new StagePlan(slots, numGroups);
+            int[] cursor = new int[numMachines];
+            int[] inSlot = new int[numMachines];
+
+            for (int g = 0; g < numGroups; g++) {
+                for (int k = groupStart[g]; k < groupStart[g + 1]; k++) {
+                    int best = -1;
+                    long bestStart = 0;
+                    long bestFinish = Long.MAX_VALUE;
+
+                    for (int m = 0; m < numMachines; m++) {
+                        int cycleTime = cycleTimes[m];
+                        // Releases only grow, so a slot that cannot take this piece never takes a later one
+                        while (cursor[m] < slots[m].length) {
+                            int[] slot = slots[m][cursor[m]];
+                            long start = Math.max(slot[0] + plan.waits[m][cursor[m]] + (long) cycleTime * inSlot[m], release[g]);
+                            if (start + cycleTime <= slot[1]) {
+                                break;
+                            }
+                            cursor[m]++;
+                            inSlot[m] = 0;
+                        }
+                        if (cursor[m] == slots[m].length) {
+                            continue;
+                        }
+
+                        int[] slot = slots[m][cursor[m]];
+                        long start = Math.max(slot[0] + plan.waits[m][cursor[m]] + (long) cycleTime * inSlot[m], release[g]);
+                        if (start + cycleTime < bestFinish) {
+                            best = m;
+                            bestStart = start;
+                            bestFinish = start + cycleTime;
+                        }
+                    }
+
+                    if (best < 0) {
+                        return null;
+                    }
+                    int j = cursor[best];
+                    long blockEnd = slots[best][j][0] + plan.waits[best][j] + (long) cycleTimes[best] * inSlot[best];
+                    plan.waits[best][j] += bestStart - blockEnd;
+                    plan.counts[best][j][g]++;
+                    inSlot[best]++;
+                }
+            }
+            return plan;
+        }
+
+        // Time the last piece of each group ends
+        long[] completions(int[] cycleTimes, int[][][] slots) {
+            long[] completions = new long[numGroups];
+            forEachBlock(cycleTimes, slots, (g, start, end) -> completions[g] = Math.max(completions[g], end));
+            return completions;
+        }
+
+        // Time the first piece of each group starts
+        long[] firstStarts(int[] cycleTimes, int[][][] slots) {
+            long[] starts = new long[numGroups];
+            Arrays.fill(starts, Long.MAX_VALUE);
+            forEachBlock(cycleTimes, slots, (g, start, end) -> starts[g] = Math.min(starts[g], start));
+            return starts;
+        }
+
+        long makespan(int[] cycleTimes, int[][][] slots) {
+            return Arrays.stream(completions(cycleTimes, slots)).max().orElse(0);
+        }
+
+        // Pieces of group g get the ids groupStart[g] ... in the order they are met, which is fine since
+        // a group only enters the next stage once all of it is done
+        void addTasks(ScheduleResult.Builder builder, int[] cycleTimes, int[][][] slots, int[] groupStart) {
+            int[] nextPiece = Arrays.copyOf(groupStart, groupStart.length - 1);
+            for (int m = 0; m < counts.length; m++) {
+                for (int j = 0; j < counts[m].length; j++) {
+                    long t = slots[m][j][0] + waits[m][j];
+                    for (int g = 0; g < numGroups; g++) {
+                        for (int k = 0; k < counts[m][j][g]; k++) {
+                            builder.addTask(m, nextPiece[g]++, t, t + cycleTimes[m]);
+                            t += cycleTimes[m];
+                        }
+                    }
+                }
+            }
+        }
+
+        private void forEachBlock(int[] cycleTimes, int[][][] slots, BlockVisitor visitor) {
+            for (int m = 0; m < counts.length; m++) {
+                for (int j = 0; j < counts[m].length; j++) {
+                    long t = slots[m][j][0] + waits[m][j];
+                    for (int g = 0; g < numGroups; g++) {
+                        if (counts[m][j][g] > 0) {
+                            long end = t + (long) cycleTimes[m] * counts[m][j][g];
+                            visitor.visit(g, t, end);
+                            t = end;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private interface BlockVisitor {
+        void visit(int group, long start, long end);
+    }
+
+    // CP-SAT variables of one stage. Constant releases and dues prune the counts, linked stages get their
+    // releases from the previous stage's completion variables through releaseAfter.
+    private static final class StageModel {
+
+        private final int[] cycleTimes;
+        private final int[][][] slots;
+        private final IntVar[][][] counts;
+        private final BoolVar[][][] used;
+        private final IntVar[][] waits;
+        private final IntVar[] completions;
+        private final IntVar makespan;
+
+        StageModel(CpModel model, String name, int[] cycleTimes, int[][][] slots, int[] groupStart, long[] release, long[] due,
+                   long horizon, boolean linked) {
+            int numMachines = slots.length;
+            int numGroups = groupStart.length - 1;
+            this.cycleTimes = cycleTimes;
+            this.slots = slots;
+            this.counts = new IntVar[numMachines][][];
+            this.used = new BoolVar[numMachines][][];
+            this.waits = new IntVar[numMachines][];
+            this.completions = new IntVar[numGroups];
+            this.makespan = model.newIntVar(0, horizon, name + "_makespan");
+
+            for (int g = 0; g < numGroups; g++) {
+                long latest = due == null ? horizon : Math.min(horizon, due[g]);
+                completions[g] = model.newIntVar(0, Math.max(latest, 0), name + "_completion_" + g);
+                model.addGreaterOrEqual(makespan, completions[g]);
+            }
+
+            List<List<IntVar>> groupCounts = new ArrayList<>();
+            for (int g = 0; g < numGroups; g++) {
+                groupCounts.add(new ArrayList<>());
+            }
+
+            for (int m = 0; m < numMachines; m++) {
+                int cycleTime = cycleTimes[m];
+                counts[m] = new IntVar[slots[m].length][numGroups];
+                used[m] = new BoolVar[slots[m].length][numGroups];
+                waits[m] = new IntVar[slots[m].length];
+
+                for (int j = 0; j < slots[m].length; j++) {
+                    long a = slots[m][j][0];
+                    long b = slots[m][j][1];
+                    if (a >= horizon) {
+                        continue;
+                    }
+
+                    boolean any = false;
+                    boolean waiting = linked;
+                    for (int g = 0; g < numGroups; g++) {
+                        long earliest = Math.max(a, release[g]);
+                        long latest = Math.min(b, due == null ? horizon : Math.min(horizon, due[g]));
+                        long maxCount = Math.min(groupStart[g + 1] - groupStart[g], (latest - earliest) / cycleTime);
+                        if (latest - earliest < cycleTime || maxCount <= 0) {
+                            continue;
+                        }
+                        counts[m][j][g] = model.newIntVar(0, maxCount, name + "_count_" + m + "_" + j + "_" + g);
+                        used[m][j][g] = model.newBoolVar(name + "_used_" + m + "_" + j + "_" + g);
+                        model.addGreaterOrEqual(counts[m][j][g], 1).onlyEnforceIf(used[m][j][g]);
+                        model.addEquality(counts[m][j][g], 0).onlyEnforceIf(used[m][j][g].not());
+                        groupCounts.get(g).add(counts[m][j][g]);
+                        any = true;
+                        waiting |= release[g] > a;
+                    }
+                    if (!any) {
+                        continue;
+                    }
+                    if (waiting) {
+                        waits[m][j] = model.newIntVar(0, b - a - cycleTime, name + "_wait_" + m + "_" + j);
+                    }
+
+                    // The block fits in the slot, every group present ends before its completion and
+                    // starts after its release
+                    model.addLessOrEqual(blockOffset(m, j, numGroups), b - a);
+                    for (int g = 0; g < numGroups; g++) {
+                        if (counts[m][j][g] == null) {
+                            continue;
+                        }
+                        LinearExpr end = LinearExpr.newBuilder().add(completions[g]).addTerm(blockOffset(m, j, g + 1), -1).build();
+                        model.addGreaterOrEqual(end, a).onlyEnforceIf(used[m][j][g]);
+                        if (release[g] > a) {
+                            model.addGreaterOrEqual(blockOffset(m, j, g), release[g] - a).onlyEnforceIf(used[m][j][g]);
+                        }
+                    }
+                }
+            }
+
+            for (int g = 0; g < numGroups; g++) {
+                model.addEquality(LinearExpr.sum(groupCounts.get(g).toArray(new IntVar[0])), groupStart[g + 1] - groupStart[g]);
+            }
+        }
+
+        // Wait plus the pieces of the groups before group g, the offset of group g's first piece in the slot
+        private LinearExpr blockOffset(int m, int j, int group) {
+            LinearExprBuilder offset = LinearExpr.newBuilder();
+            if (waits[m][j] != null) {
+                offset.add(waits[m][j]);
+            }
+            for (int g = 0; g < group; g++) {
+                if (counts[m][j][g] != null) {
+                    offset.addTerm(counts[m][j][g], cycleTimes[m]);
+                }
+            }
+            return offset.build();
+        }
+
+        // Group g starts here only after the previous stage completed it
+        void releaseAfter(CpModel model, IntVar[] previous) {
+            for (int m = 0; m < counts.length; m++) {
+                for (int j = 0; j < counts[m].length; j++) {
+                    for (int g = 0; g < previous.length; g++) {
+                        if (counts[m][j][g] == null) {
+                            continue;
+                        }
+                        LinearExpr start = LinearExpr.newBuilder().add(blockOffset(m, j, g)).addTerm(previous[g], -1).build();
+                        model.addGreaterOrEqual(start, -slots[m][j][0]).onlyEnforceIf(used[m][j][g]);
+                    }
+                }
+            }
+        }
+
+        void hint(CpModel model, StagePlan plan, int[] cycleTimes, int[][][] slots) {
+            long[] planCompletions = plan.completions(cycleTimes, slots);
+            long planMakespan = 0;
+            for (int g = 0; g < completions.length; g++) {
+                model.addHint(completions[g], planCompletions[g]);
+                planMakespan = Math.max(planMakespan, planCompletions[g]);
+            }
+            model.addHint(makespan, planMakespan);
+
+            for (int m = 0; m < counts.length; m++) {
+                for (int j = 0; j < counts[m].length; j++) {
+                    if (waits[m][j] != null) {
+                        model.addHint(waits[m][j], plan.waits[m][j]);
+                    }
+                    for (int g = 0; g < completions.length; g++) {
+                        if (counts[m][j][g] != null) {
+                            model.addHint(counts[m][j][g], plan.counts[m][j][g]);
+                            model.addHint(used[m][j][g], plan.counts[m][j][g] > 0 ? 1 : 0);
+                        }
+                    }
+                }
+            }
+        }
+
+        StagePlan decode(CpSolver solver) {
+            StagePlan plan = new StagePlan(slots, completions.length);
+            for (int m = 0; m < counts.length; m++) {
+                for (int j = 0; j < counts[m].length; j++) {
+                    plan.waits[m][j] = waits[m][j] == null ? 0 : solver.value(waits[m][j]);
+                    for (int g = 0; g < completions.length; g++) {
+                        plan.counts[m][j][g] = counts[m][j][g] == null ? 0 : (int) solver.value(counts[m][j][g]);
+                    }
+                }
+            }
+            return plan;
+        }
+    }
+
+    // Stages as SchedulingInstance files, piece count from the command line:
+    //   java -cp ... es.emi.MultiStageScheduling <pieces> <stage file ...> [--time-limit s] [--workers n]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: MultiStageScheduling <pieces> <stage file ...> [--time-limit s] [--workers n]");
+            return;
+        }
+        int numPieces = Integer.parseInt(args[0]);
+        SolverConfig config = SolverConfig.allCores();
+        config.setLogSearchProgress(false);
+        List<SchedulingInstance> stages = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--time-limit" -> config.setMaxTimeInSeconds(Double.parseDouble(args[++i]));
+                case "--workers" -> config.setNumWorkers(Integer.parseInt(args[++i]));
+                default -> stages.add(SchedulingInstance.read(Path.of(args[i])));
+            }
+        }
+
+        int[][] cycleTimes = new int[stages.size()][];
+        ZonedDateTime[][][][] productiveIntervals = new ZonedDateTime[stages.size()][][][];
+        for (int s = 0; s < stages.size(); s++) {
+            cycleTimes[s] = stages.get(s).getCycleTimes();
+            productiveIntervals[s] = stages.get(s).getProductiveIntervals();
+        }
+
+        MultiStageResult result = solver(numPieces, cycleTimes, productiveIntervals, config);
+        for (int s = 0; s < result.getNumStages(); s++) {
+            System.out.printf("stage %d%s: %d machines, ends at %d s%n", s, s == result.getBottleneck() ? " (bottleneck)" : "",
+                    cycleTimes[s].length, result.getStage(s).getMakespan());
+        }
+        System.out.printf("%s, makespan %d s, bound %d s, %.2f s%n", result.getStatus(), result.getMakespan(),
+                result.getLowerBound(), result.getWallTime());
+    }
+
+    private static ZonedDateTime findEarliestStart(ZonedDateTime[][][][] productiveIntervals) {
+        return Arrays.stream(productiveIntervals)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+
+    // Slots that can hold a piece, sorted by start
+    private static int[][][] preprocessIntervals(int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, ZonedDateTime referencePoint) {
+        int[][][] productiveIntervalsInSeconds = new int[productiveIntervals.length][][];
+        for (int m = 0; m < productiveIntervals.length; m++) {
+            List<int[]> validIntervals = new ArrayList<>();
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                int start = (int) ChronoUnit.SECONDS.between(referencePoint, interval[0]);
+                int end = (int) ChronoUnit.SECONDS.between(referencePoint, interval[1]);
+                if (end - start >= cycleTimes[m]) {
+                    validIntervals.add(new int[]{start, end});
+                }
+            }
+            validIntervals.sort((x, y) -> Integer.compare(x[0], y[0]));
+            productiveIntervalsInSeconds[m] = validIntervals.toArray(new int[0][]);
+        }
+        return productiveIntervalsInSeconds;
+    }
+}
@@ -0,0 +1,85 @@
+package es.emi;
+
+import com.google.ortools.Loader;
+import com.google.ortools.sat.CpModel;
+import com.google.ortools.sat.CpSolver;
+import com.google.ortools.sat.CpSolverStatus;
+import com.google.ortools.sat.IntVar;
+import com.google.ortools.sat.IntervalVar;
+import com.google.ortools.sat.LinearExpr;
+import com.google.ortools.sat.Literal;
+
+public final class NativeRuntime {
+
+    private static volatile boolean loaded;
+    private static volatile boolean warmedUp;
+
+    private NativeRuntime() {
+    }
+
+    // Extracts and loads the OR-Tools natives the first time, later calls return immediately
+    public static void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (NativeRuntime.class) {
+            if (!loaded) {
+                Loader.loadNativeLibraries();
+                loaded = true;
+            }
+        }
+    }
+
+    // Small solve touching the same model and solver paths as the engines,
+    // so the first real request does not pay for JIT and native initialisation
+    public static synchronized CpSolverStatus warmUp() {
+        load();
+
+        int numMachines = 2;
+        int numPieces = 4;
+        int[][] slots = {{0, 1800}, {3600, 5400}};
+
+        CpModel model = new CpModel();
+        IntVar[] endTimes = new IntVar[numMachines * numPieces];
+
+        for (int m = 0; m < numMachines; m++) {
+            IntervalVar[] tasks = new IntervalVar[numPieces];
+            for (int i = 0; i < numPieces; i++) {
+                IntVar start = model.newIntVar(0, 5400, "start_" + m + "_" + i);
+                IntVar end = model.newIntVar(0, 5400, "end_" + m + "_" + i);
+                Literal active = model.newBoolVar("active_" + m + "_" + i);
+                tasks[i] = model.newOptionalIntervalVar(start, LinearExpr.constant(900L * (m + 1)), end, active, "task_" + m + "_" + i);
+
+                Literal[] inSlot = new Literal[slots.length];
+                for (int j = 0; j < slots.length; j++) {
+                    inSlot[j] = model.newBoolVar("in_" + m + "_" + i + "_" + j);
+                    model.addGreaterOrEqual(start, slots[j][0]).onlyEnforceIf(inSlot[j]);
+                    model.addLessOrEqual(end, slots[j][1]).onlyEnforceIf(inSlot[j]);
+                }
+                model.addEquality(LinearExpr.sum(inSlot), 1).onlyEnforceIf(active);
+                endTimes[m * numPieces + i] = end;
+            }
+            model.addNoOverlap(tasks);
+        }
+
+        IntVar makespan = model.newIntVar(0, 5400, "makespan");
+        model.addMaxEquality(makespan, endTimes);
+        model.minimize(makespan);
+
+        CpSolver solver = new CpSolver();
+        solver.getParameters().setNumWorkers(1);
+        solver.getParameters().setLogSearchProgress(false);
+        CpSolverStatus status = solver.solve(model);
+
+        warmedUp = true;
+        return status;
+    }
+
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    public static boolean isWarmedUp() {
+        return warmedUp;
+    }
+}
@@ -1,195 +1,157 @@
 package es.emi;
 
-import com.google.ortools.Loader;
 import com.google.ortools.sat.*;
 
-import java.sql.Time;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
+// Works on Machine/Calendar directly. Each slot gets a piece count and a usage flag, pieces run back to
+// back from the slot start at the machine cycle time (its speed), so the model is linear in the number
+// of slots that can be used before the horizon bound.
 public class ProductionScheduling {
 
-    public static void solveProductionScheduling(List<Machine> machines, int numPieces) {
-
-        Loader.loadNativeLibraries();
+    public static ScheduleResult solveProductionScheduling(List<Machine> machines, int numPieces) {
+        ScheduleResult result = solveProductionScheduling(machines, numPieces, SolverConfig.defaults());
+        result.print();
+        System.out.println("Problem solved in " + result.getWallTime() * 1000 + " milliseconds");
+        return result;
+    }
 
-        CpModel model = new CpModel();
+    public static ScheduleResult solveProductionScheduling(List<Machine> machines, int numPieces, SolverConfig config) {
+        NativeRuntime.load();
 
         int numMachines = machines.size();
+        long referencePoint = machines.stream()
+                .flatMap(machine -> machine.getSlots().stream())
+                .mapToLong(TimeSlot::getStartTimeInSeconds)
+                .min().orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
 
-        // Convert productive intervals to seconds from a fixed reference point (start of the day)
-        List<List<Long>> productiveStartTimes = new ArrayList<>(machines.size());
-        List<List<Long>> productiveEndTimes = new ArrayList<>(machines.size());
-
-        // initialize empty productive times per machine
+        // Productive slots in seconds from the reference point
+        List<List<long[]>> slots = new ArrayList<>(numMachines);
         for (Machine machine : machines) {
-            int slots = machine.getCalendarSize();
-
-            productiveStartTimes.add(new ArrayList<>(slots));
-            productiveEndTimes.add(new ArrayList<>(slots));
-        }
-
-        for (int i = 0; i < numMachines; i++) {
-
-            List<TimeSlot> slots = machines.get(i).getCalendar().getSlots();
-
-            // all calendar intervals
-            for (TimeSlot slot : slots) {
-                productiveStartTimes.get(i).add(slot.getStartTimeInSeconds());
-                productiveEndTimes.get(i).add(slot.getEndTimeInSeconds());
+            List<long[]> machineSlots = new ArrayList<>(machine.getCalendarSize());
+            for (TimeSlot slot : machine.getSlots()) {
+                machineSlots.add(new long[]{slot.getStartTimeInSeconds() - referencePoint, slot.getEndTimeInSeconds() - referencePoint});
             }
+            machineSlots.sort((a, b) -> Long.compare(a[0], b[0]));
+            slots.add(machineSlots);
         }
 
-        long minStartTime = productiveStartTimes.stream()
-                .flatMap(Collection::stream)
-                .mapToLong(c -> c)
-                .min().orElse(0);
-
-        long maxEndTime = productiveStartTimes.stream()
-                .flatMap(Collection::stream)
-                .mapToLong(c -> c)
-                .max().orElse(Long.MAX_VALUE);
-
-
-        // VARIABLES
-        List<List<IntVar>> endTimesVar = new ArrayList<>(numMachines);
-        List<List<IntVar>> startTimesVar = new ArrayList<>(numMachines);
-        List<IntVar> assignmentsVar = new ArrayList<>(numPieces);
-        IntVar makeSpanObjective = model.newIntVar(0L, maxEndTime, "makespan");
-
-        // initialize schedule time variables
-        for (Machine machine : machines) {
-            int slots = machine.getCalendarSize();
-
-            startTimesVar.add(new ArrayList<>(slots));
-            endTimesVar.add(new ArrayList<>(slots));
-        }
-
-
-        // variable piece assigned to machine flag
-        //  0 1 2 3 4 5 pieces as index
-        // [0,1,1,1,1,2] machines as values
-        // piece_0 assigned to machine_0
-        // .....
-        // piece_5 assigned to machine_2
-        for (int i = 0; i < numPieces; i++) {
-            assignmentsVar.add(model.newIntVar(0, numMachines - 1, "assignment_" + i));
+        // Horizon bound from an earliest-finish greedy, no slot starting after it can ever be used
+        long horizon = greedyMakespan(machines, slots, numPieces);
+        if (horizon < 0) {
+            return new ScheduleResult.Builder(numMachines).build(CpSolverStatus.INFEASIBLE, referencePoint, 0);
         }
 
+        CpModel model = new CpModel();
+        IntVar makespan = model.newIntVar(0, horizon, "makespan");
+        List<List<IntVar>> countsVar = new ArrayList<>(numMachines);
+        List<List<long[]>> usedSlots = new ArrayList<>(numMachines);
+        List<IntVar> allCounts = new ArrayList<>();
 
-        // CONSTRAINS
         for (int i = 0; i < numMachines; i++) {
+            int cycleTime = machines.get(i).getSpeed();
+            List<IntVar> machineCounts = new ArrayList<>();
+            List<long[]> machineUsedSlots = new ArrayList<>();
+            IntVar previousCount = null;
+            long previousCapacity = 0;
+
+            for (long[] slot : slots.get(i)) {
+                long capacity = Math.min((slot[1] - slot[0]) / cycleTime, numPieces);
+                if (capacity == 0 || slot[0] >= horizon) {
+                    continue;
+                }
 
-            Machine machine = machines.get(i);
-            int timeSlotsSize = machine.getCalendarSize();
-
-            for (int j = 0; j < timeSlotsSize; j++) {
-
-                // Create start and end time variables and store it
-                IntVar startIJ = model.newIntVar(minStartTime, maxEndTime, "startTime_" + i + "_" + j);
-                startTimesVar.get(i).add(startIJ);
-
-                IntVar endIJ = model.newIntVar(minStartTime, maxEndTime, "endTime_" + i + "_" + j);
-                endTimesVar.get(i).add(endIJ);
-
-                Long start = productiveStartTimes.get(i).get(j);
-                Long end = productiveEndTimes.get(i).get(j);
-
-                // Add constraints for start and end times
-                // Ensure the pieces are produced within the productive intervals
-                model.addGreaterThan(endIJ, startIJ);
-                model.addGreaterOrEqual(startIJ, start);
-                model.addLessOrEqual(endIJ, end);
-                // Set end time as start time plus cycle time
-                IntVar speedTime = model.newConstant(machine.getSpeed());
-                model.addLessOrEqual(endIJ, LinearExpr.sum(new IntVar[]{startIJ, speedTime}));
+                int j = machineCounts.size();
+                IntVar count = model.newIntVar(0, capacity, "count_" + i + "_" + j);
+                BoolVar used = model.newBoolVar("used_" + i + "_" + j);
 
-//                model.addLessOrEqual(endIJ, makeSpanObjective);
+                // Assignment of pieces to the slot drives its usage and the makespan
+                model.addGreaterOrEqual(count, 1).onlyEnforceIf(used);
+                model.addEquality(count, 0).onlyEnforceIf(used.not());
+                model.addGreaterOrEqual(makespan, LinearExpr.affine(count, cycleTime, slot[0])).onlyEnforceIf(used);
 
-                // Print data
-                System.out.println("Productive interval: [" + start + ", " + end + "]");
-                System.out.println("Cycle time: " + machine.getSpeed());
+                // Dominance: a later slot is only used once the previous one is full
+                if (previousCount != null) {
+                    model.addEquality(previousCount, previousCapacity).onlyEnforceIf(used);
+                }
 
+                machineCounts.add(count);
+                machineUsedSlots.add(slot);
+                allCounts.add(count);
+                previousCount = count;
+                previousCapacity = capacity;
             }
-        }
-
-        // Flatten the list of startTimesVar for get all
-        List<IntVar> allStartTimesVars = startTimesVar.stream()
-                .flatMap(Collection::stream)
-                .toList();
-
-//        // IntVar for the sum of startTimesVar sizes
-        IntVar sumStartTimesVars = model.newIntVar(0, allStartTimesVars.size(), "sumStartTimesVars");
 
-        // Define constraints
-        // Constraint to ensure that the sum of the sizes of startTimesVar per machine is not greater than numPieces
-        model.addLessOrEqual(sumStartTimesVars, numPieces);
+            countsVar.add(machineCounts);
+            usedSlots.add(machineUsedSlots);
+        }
 
-        // Create an IntVar to count the number of start times variables
-        IntVar actualCount = model.newIntVar(0, allStartTimesVars.size(), "actualCount");
+        // Every piece is produced exactly once
+        model.addEquality(LinearExpr.sum(allCounts.toArray(new IntVar[0])), numPieces);
+        model.minimize(makespan);
 
-        // Constraint to ensure that the actualCount does not exceed numPieces
-        model.addLessOrEqual(actualCount, numPieces);
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = config.solve(solver, model);
 
-        // Ensures that each piece is assigned to exactly one machine
-        for (int j = 0; j < numPieces; j++) {
-            List<BoolVar> pieceAssignments = new ArrayList<>(numMachines);
+        ScheduleResult.Builder builder = new ScheduleResult.Builder(numMachines);
+        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
+            int piece = 0;
             for (int i = 0; i < numMachines; i++) {
-                BoolVar assignment = model.newBoolVar("assignment_" + j + "_" + i);
-                pieceAssignments.add(assignment);
+                int cycleTime = machines.get(i).getSpeed();
+                for (int j = 0; j < countsVar.get(i).size(); j++) {
+                    long start = usedSlots.get(i).get(j)[0];
+                    for (long k = solver.value(countsVar.get(i).get(j)); k > 0; k--) {
+                        builder.addTask(i, piece++, start, start + cycleTime);
+                        start += cycleTime;
+                    }
+                }
             }
-            model.addExactlyOne(pieceAssignments.toArray(new BoolVar[0]));
+            // The objective is the makespan
+            builder.setLowerBound((long) Math.ceil(solver.bestObjectiveBound()));
         }
 
-        // Objective: Minimize the make span Ok
-//        for (int i = 0; i < numMachines; i++) {
-//            Machine machine = machines.get(i);
-//            List<TimeSlot> slots = machine.getCalendar().getSlots();
-//
-//            for (int j = 0; j < slots.size(); j++) {
-//                model.addLessOrEqual(endTimesVar.get(i).get(j), makeSpanObjective);
-//            }
-//        }
-
-        model.minimize(makeSpanObjective);
-        System.out.println("MakeSpanObjective: " + makeSpanObjective);
+        return builder.build(status, referencePoint, solver.wallTime());
+    }
 
+    // Each piece goes to the machine where it finishes first, -1 when the calendars cannot hold all pieces
+    private static long greedyMakespan(List<Machine> machines, List<List<long[]>> slots, int numPieces) {
+        int numMachines = machines.size();
+        int[] slotCursor = new int[numMachines];
+        long[] nextStart = new long[numMachines];
         for (int i = 0; i < numMachines; i++) {
-            for (int j = 0; j < startTimesVar.get(i).size(); j++) {
-                IntVar startVar = startTimesVar.get(i).get(j);
-                IntVar endVar = endTimesVar.get(i).get(j);
-
-                System.out.println("Machine " + i + ", Slot " + j);
-                System.out.println("Start time variable: " + startVar);
-                System.out.println("End time variable: " + endVar);
-            }
+            nextStart[i] = slots.get(i).isEmpty() ? 0 : slots.get(i).get(0)[0];
         }
 
-        // Solving the model
-        CpSolver solver = new CpSolver();
-        solver.getParameters().setLogSearchProgress(true);
-        CpSolverStatus status = solver.solve(model);
-
+        long makespan = 0;
+        for (int piece = 0; piece < numPieces; piece++) {
+            int best = -1;
+            long bestFinish = Long.MAX_VALUE;
 
-
-
-        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
-            System.out.println("Makespan: " + solver.value(makeSpanObjective));
             for (int i = 0; i < numMachines; i++) {
-                for (int j = 0; j < numPieces; j++) {
-                    if (solver.value(assignmentsVar.get(j)) == i) {
-                        System.out.println("Machine " + i + ": Piece " + j +
-                                ", Start time: " + solver.value(startTimesVar.get(i).get(j)) +
-                                ", End time: " + solver.value(endTimesVar.get(i).get(j)));
+                int cycleTime = machines.get(i).getSpeed();
+                List<long[]> machineSlots = slots.get(i);
+
+                while (slotCursor[i] < machineSlots.size() && nextStart[i] + cycleTime > machineSlots.get(slotCursor[i])[1]) {
+                    slotCursor[i]++;
+                    if (slotCursor[i] < machineSlots.size()) {
+                        nextStart[i] = Math.max(nextStart[i], machineSlots.get(slotCursor[i])[0]);
                     }
                 }
+
+                if (slotCursor[i] < machineSlots.size() && nextStart[i] + cycleTime < bestFinish) {
+                    best = i;
+                    bestFinish = nextStart[i] + cycleTime;
+                }
             }
-        } else {
-            System.out.println("No solution found.");
-        }
 
-        System.out.println("\nAdvanced usage:");
-        System.out.println("Problem solved in " + solver.wallTime() + " milliseconds");
-        System.out.println("Problem response stats " + solver.responseStats());
+            if (best < 0) {
+                return -1;
+            }
+            nextStart[best] = bestFinish;
+            makespan = Math.max(makespan, bestFinish);
+        }
 
+        return makespan;
     }
-}
\ No newline at end of file
+}
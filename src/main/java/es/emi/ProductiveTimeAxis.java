@@ -0,0 +1,117 @@
+package es.emi;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Monotone mapping between wall-clock seconds and cumulative productive seconds of one machine.
+// Breaks between slots collapse to a single point on the productive axis.
+public class ProductiveTimeAxis {
+
+    private final long[] starts;
+    private final long[] ends;
+    // cumulative[j] = productive seconds available before slot j, cumulative[n] = total
+    private final long[] cumulative;
+
+    public ProductiveTimeAxis(long[] starts, long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+        this.cumulative = new long[starts.length + 1];
+
+        for (int j = 0; j < starts.length; j++) {
+            if (ends[j] < starts[j] || (j > 0 && starts[j] < ends[j - 1])) {
+                throw new IllegalArgumentException("Slots must be sorted and must not overlap, see slot " + j);
+            }
+            cumulative[j + 1] = cumulative[j] + ends[j] - starts[j];
+        }
+    }
+
+    // Slots as seconds from the reference, as produced by the engines' preprocessIntervals
+    public static ProductiveTimeAxis fromIntervals(int[][] intervals) {
+        long[] starts = new long[intervals.length];
+        long[] ends = new long[intervals.length];
+        for (int j = 0; j < intervals.length; j++) {
+            starts[j] = intervals[j][0];
+            ends[j] = intervals[j][1];
+        }
+        return new ProductiveTimeAxis(starts, ends);
+    }
+
+    public static ProductiveTimeAxis fromCalendar(Calendar calendar, long referenceEpochSecond) {
+        List<TimeSlot> slots = calendar.getSlots();
+        long[] starts = new long[slots.size()];
+        long[] ends = new long[slots.size()];
+        for (int j = 0; j < slots.size(); j++) {
+            starts[j] = slots.get(j).getStartTimeInSeconds() - referenceEpochSecond;
+            ends[j] = slots.get(j).getEndTimeInSeconds() - referenceEpochSecond;
+        }
+        return new ProductiveTimeAxis(starts, ends);
+    }
+
+    public int getNumSlots() {
+        return starts.length;
+    }
+
+    public long getTotalProductive() {
+        return cumulative[starts.length];
+    }
+
+    public long getSlotStart(int slot) {
+        return starts[slot];
+    }
+
+    public long getSlotEnd(int slot) {
+        return ends[slot];
+    }
+
+    // Productive seconds available before the slot
+    public long getCumulative(int slot) {
+        return cumulative[slot];
+    }
+
+    // Productive seconds elapsed between the first slot start and the wall-clock time
+    public long toProductive(long wallClock) {
+        int slot = Arrays.binarySearch(starts, wallClock);
+        slot = slot < 0 ? -slot - 2 : slot;
+
+        if (slot < 0) {
+            return 0;
+        }
+        return cumulative[slot] + Math.min(wallClock, ends[slot]) - starts[slot];
+    }
+
+    // Wall-clock time at which the given productive second is reached, for task ends:
+    // a value on a slot boundary maps to the end of the earlier slot
+    public long toWallClockEnd(long productive) {
+        int slot = slotEndingAtOrAfter(productive);
+        return starts[slot] + productive - cumulative[slot];
+    }
+
+    // Wall-clock time at which production resumes at the given productive second, for task starts:
+    // a value on a slot boundary maps to the start of the later slot
+    public long toWallClockStart(long productive) {
+        int slot = slotEndingAtOrAfter(productive);
+        while (slot + 1 < starts.length && cumulative[slot + 1] == productive) {
+            slot++;
+        }
+        return starts[slot] + productive - cumulative[slot];
+    }
+
+    private int slotEndingAtOrAfter(long productive) {
+        if (productive < 0 || productive > getTotalProductive() || starts.length == 0) {
+            throw new IllegalArgumentException("Productive time out of range: " + productive);
+        }
+
+        // First slot whose cumulative end reaches the productive time
+        int low = 0;
+        int high = starts.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle + 1] >= productive) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,224 @@
+package es.emi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Solves seeded ScenarioGenerator instances with each engine and compares them with a stored baseline:
+//   java -cp ... es.emi.RegressionSuite [--baseline file] [--record] [--seeds n] [--engines BULK,C,...]
+//                                       [--deterministic-limit d] [--tolerance f] [--size-tolerance f] [--write dir]
+// --record solves and writes the baseline, otherwise the run is compared with it and the process exits
+// with 1 when anything got worse than the tolerance allows, so mvn verify -Pregression fails. The gate only
+// uses measures that repeat exactly from run to run: model size, CP-SAT deterministic time and branches
+// with one worker, the default seed and a deterministic time limit instead of a wall-clock one, and
+// whether the optimum was proven. Wall-clock times are printed but never compared. LNS and DISTRIBUTED
+// are left out, their neighbourhood loops run against a wall-clock deadline on several threads.
+public class RegressionSuite {
+
+    private static final Path DEFAULT_BASELINE = Path.of("regression", "baseline.txt");
+    private static final String DEFAULT_ENGINES = "BULK,C,RESUMABLE";
+    private static final int DEFAULT_SEEDS = 8;
+    private static final double DEFAULT_DETERMINISTIC_LIMIT = 10;
+    // Relative growth allowed, on top of an absolute floor for the tiny models
+    private static final double DEFAULT_TOLERANCE = 0.1;
+    private static final double DETERMINISTIC_SLACK = 0.05;
+    private static final long BRANCH_SLACK = 1000;
+    private static final double DEFAULT_SIZE_TOLERANCE = 0.05;
+
+    public static void main(String[] args) throws IOException {
+        Path baselineFile = DEFAULT_BASELINE;
+        boolean record = false;
+        int seeds = DEFAULT_SEEDS;
+        String engines = DEFAULT_ENGINES;
+        double deterministicLimit = DEFAULT_DETERMINISTIC_LIMIT;
+        double tolerance = DEFAULT_TOLERANCE;
+        double sizeTolerance = DEFAULT_SIZE_TOLERANCE;
+        Path writeDirectory = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--baseline" -> baselineFile = Path.of(args[++i]);
+                case "--record" -> record = true;
+                case "--seeds" -> seeds = Integer.parseInt(args[++i]);
+                case "--engines" -> engines = args[++i];
+                case "--deterministic-limit" -> deterministicLimit = Double.parseDouble(args[++i]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++i]);
+                case "--size-tolerance" -> sizeTolerance = Double.parseDouble(args[++i]);
+                case "--write" -> writeDirectory = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Baseline baseline = null;
+        if (!record) {
+            if (!Files.isRegularFile(baselineFile)) {
+                throw new IllegalArgumentException("No baseline at " + baselineFile + ", record one with --record");
+            }
+            baseline = Baseline.read(baselineFile);
+            deterministicLimit = baseline.deterministicLimit;
+        }
+
+        ScenarioGenerator generator = new ScenarioGenerator();
+        List<SchedulingEngine> engineList = new ArrayList<>();
+        for (String engine : engines.split(",")) {
+            SchedulingEngine parsed = SchedulingEngine.valueOf(engine.trim());
+            if (parsed == SchedulingEngine.LNS || parsed == SchedulingEngine.DISTRIBUTED) {
+                throw new IllegalArgumentException(parsed + " does not repeat from run to run and cannot be gated");
+            }
+            engineList.add(parsed);
+        }
+
+        NativeRuntime.warmUp();
+
+        Baseline current = new Baseline(deterministicLimit);
+        int regressions = 0;
+        for (int seed = 1; seed <= seeds; seed++) {
+            SchedulingInstance instance = generator.generate(seed);
+            if (writeDirectory != null) {
+                Files.createDirectories(writeDirectory);
+                Files.writeString(writeDirectory.resolve("scenario-" + seed + ".txt"), instance.format());
+            }
+            System.out.printf("seed %d: %d machines, %d slots, %d pieces%n", seed, instance.getNumMachines(),
+                    instance.getNumSlots(), instance.getNumPieces());
+
+            for (SchedulingEngine engine : engineList) {
+                SolverConfig config = new SolverConfig();
+                config.setNumWorkers(1);
+                config.setMaxDeterministicTime(deterministicLimit);
+                SolveMeasurement run = SolveMeasurement.run(engine, instance, config);
+
+                Entry entry = new Entry(run.getModelSize(), run.getDeterministicTime(), run.getBranches(), run.isOptimal());
+                String key = engine + " " + seed;
+                current.entries.put(key, entry);
+
+                String verdict = "";
+                if (baseline != null) {
+                    Entry expected = baseline.entries.get(key);
+                    if (expected == null) {
+                        verdict = "  new";
+                    } else {
+                        List<String> problems = expected.compare(entry, tolerance, sizeTolerance);
+                        if (!problems.isEmpty()) {
+                            regressions++;
+                            verdict = "  REGRESSION " + String.join(", ", problems);
+                        }
+                    }
+                }
+                System.out.printf("  %-14s size %8d  dtime %8.3f  branches %9d  %-7s  first %8s  optimal %8s%s%n",
+                        engine, entry.size, entry.deterministicTime, entry.branches, entry.optimal ? "optimal" : "limit",
+                        seconds(run.getFirstSolutionSeconds()), seconds(run.getOptimalSeconds()), verdict);
+            }
+        }
+
+        if (record) {
+            current.write(baselineFile);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " regressions against " + baselineFile);
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + baselineFile);
+    }
+
+    private static String seconds(double value) {
+        return value < 0 ? "-" : String.format("%.3f s", value);
+    }
+
+    // Measurements by "ENGINE seed"
+    private static class Baseline {
+
+        private final double deterministicLimit;
+        private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+        private Baseline(double deterministicLimit) {
+            this.deterministicLimit = deterministicLimit;
+        }
+
+        // Directive per line as in SchedulingInstance:
+        //   deterministic-limit 10
+        //   run BULK 3 5210 1.482 20417 optimal
+        private static Baseline read(Path file) throws IOException {
+            double deterministicLimit = DEFAULT_DETERMINISTIC_LIMIT;
+            List<String[]> runs = new ArrayList<>();
+
+            for (String line : Files.readAllLines(file)) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].isEmpty() || tokens[0].startsWith("#")) {
+                    continue;
+                }
+                switch (tokens[0]) {
+                    case "deterministic-limit" -> deterministicLimit = Double.parseDouble(tokens[1]);
+                    case "run" -> runs.add(tokens);
+                    default -> throw new IllegalArgumentException("Unknown directive: " + tokens[0]);
+                }
+            }
+
+            Baseline baseline = new Baseline(deterministicLimit);
+            for (String[] run : runs) {
+                if (run.length != 7) {
+                    throw new IllegalArgumentException("Expected run <engine> <seed> <size> <dtime> <branches> <optimal|limit>, got "
+                            + String.join(" ", run));
+                }
+                baseline.entries.put(run[1] + " " + run[2], new Entry(Long.parseLong(run[3]), Double.parseDouble(run[4]),
+                        Long.parseLong(run[5]), "optimal".equals(run[6])));
+            }
+            return baseline;
+        }
+
+        private void write(Path file) throws IOException {
+            StringBuilder text = new StringBuilder();
+            text.append("# RegressionSuite baseline, re-record with --record after an intended change\n");
+            text.append("# run <engine> <seed> <model size> <deterministic time> <branches> <optimal|limit>, one worker\n");
+            text.append("deterministic-limit ").append(deterministicLimit).append('\n');
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry run = entry.getValue();
+                text.append(String.format("run %s %d %.3f %d %s%n", entry.getKey(), run.size, run.deterministicTime,
+                        run.branches, run.optimal ? "optimal" : "limit"));
+            }
+
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.writeString(file, text);
+        }
+    }
+
+    private static class Entry {
+
+        private final long size;
+        private final double deterministicTime;
+        private final long branches;
+        private final boolean optimal;
+
+        private Entry(long size, double deterministicTime, long branches, boolean optimal) {
+            this.size = size;
+            this.deterministicTime = deterministicTime;
+            this.branches = branches;
+            this.optimal = optimal;
+        }
+
+        // What got worse than the baseline allows, empty when nothing did
+        private List<String> compare(Entry current, double tolerance, double sizeTolerance) {
+            List<String> problems = new ArrayList<>();
+            if (current.size > size * (1 + sizeTolerance)) {
+                problems.add("model size " + size + " -> " + current.size);
+            }
+            if (optimal && !current.optimal) {
+                problems.add("optimum no longer proven within the limit");
+            }
+            if (current.deterministicTime > deterministicTime * (1 + tolerance) + DETERMINISTIC_SLACK) {
+                problems.add(String.format("deterministic time %.3f -> %.3f", deterministicTime, current.deterministicTime));
+            }
+            if (current.branches > branches * (1 + tolerance) + BRANCH_SLACK) {
+                problems.add("branches " + branches + " -> " + current.branches);
+            }
+            return problems;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package es.emi;
+
+import com.google.ortools.sat.CpModel;
+import com.google.ortools.sat.CpSolver;
+import com.google.ortools.sat.CpSolverStatus;
+import com.google.ortools.sat.SatParameters;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Re-runs a recorded snapshot and compares timings:
+//   java -cp ... es.emi.Replay snapshot.snap [BASE|A|B|C|BULK|LNS|LEXICOGRAPHIC|DISTRIBUTED|RESUMABLE|MODEL ...] [--runs n]
+// MODEL solves the embedded CpModelProto as it was exported, without rebuilding it. Snapshots of engines that
+// solve several models (LNS, LEXICOGRAPHIC, DISTRIBUTED) carry no model, only the request's settings
+public class Replay {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: Replay <snapshot> [BASE|A|B|C|BULK|LNS|LEXICOGRAPHIC|DISTRIBUTED|RESUMABLE|MODEL ...] [--runs n]");
+            return;
+        }
+
+        InstanceSnapshot snapshot = InstanceSnapshot.read(Path.of(args[0]));
+        List<String> engines = new ArrayList<>();
+        int runs = 1;
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--runs")) {
+                runs = Integer.parseInt(args[++i]);
+            } else {
+                engines.add(args[i]);
+            }
+        }
+        if (engines.isEmpty()) {
+            engines.add(snapshot.getEngine());
+            if (snapshot.getModel() != null) {
+                engines.add("MODEL");
+            }
+        }
+
+        NativeRuntime.warmUp();
+
+        SchedulingInstance instance = snapshot.getInstance();
+        System.out.printf("Snapshot: engine %s, %d machines, %d slots, %d pieces%n",
+                snapshot.getEngine(), instance.getNumMachines(), instance.getNumSlots(), instance.getNumPieces());
+
+        ScheduleResult recorded = snapshot.getSchedule();
+        if (recorded != null) {
+            System.out.printf("%-8s %-10s makespan %10d  solve %8.1f ms%n", "recorded", recorded.getStatus(),
+                    recorded.getMakespan(), recorded.getWallTime() * 1000);
+        }
+
+        for (String engine : engines) {
+            for (int run = 0; run < runs; run++) {
+                replay(snapshot, engine, recorded);
+            }
+        }
+    }
+
+    private static void replay(InstanceSnapshot snapshot, String engine, ScheduleResult recorded) {
+        SolverConfig config;
+        if (engine.equals("MODEL")) {
+            config = new SolverConfig();
+            config.setBaseParameters(snapshot.getParameters());
+        } else {
+            config = engineConfig(snapshot.getParameters());
+        }
+        config.setLogSearchProgress(false);
+
+        long started = System.nanoTime();
+        CpSolverStatus status;
+        long makespan;
+        double solveSeconds;
+
+        if (engine.equals("MODEL")) {
+            if (snapshot.getModel() == null) {
+                throw new IllegalArgumentException("Snapshot has no embedded model");
+            }
+            CpModel model = new CpModel();
+            model.getBuilder().mergeFrom(snapshot.getModel());
+
+            CpSolver solver = new CpSolver();
+            status = config.solve(solver, model);
+            makespan = status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE ? (long) solver.objectiveValue() : -1;
+            solveSeconds = solver.wallTime();
+        } else {
+            ScheduleResult result = SchedulingEngine.valueOf(engine).solve(snapshot.getInstance(), config);
+            status = result.getStatus();
+            makespan = result.hasSolution() ? result.getMakespan() : -1;
+            solveSeconds = result.getWallTime();
+        }
+
+        // Total includes building the model, solve is the CP-SAT wall time alone
+        double totalMillis = (System.nanoTime() - started) / 1e6;
+        String comparison = recorded == null || recorded.getWallTime() == 0 ? ""
+                : String.format("  x%.2f of recorded", solveSeconds / recorded.getWallTime());
+        System.out.printf("%-8s %-10s makespan %10d  solve %8.1f ms  total %8.1f ms%s%n", engine, status, makespan,
+                solveSeconds * 1000, totalMillis, comparison);
+    }
+
+    // Workers and time limits go into the config, LNS and DISTRIBUTED budget their own time from it. The rest
+    // stays base parameters; without any, the engine picks its tuned profile as the recorded request did
+    private static SolverConfig engineConfig(SatParameters parameters) {
+        SolverConfig config = new SolverConfig();
+        SatParameters.Builder rest = parameters.toBuilder();
+        if (parameters.hasNumWorkers()) {
+            config.setNumWorkers(parameters.getNumWorkers());
+            rest.clearNumWorkers();
+        }
+        if (parameters.hasMaxTimeInSeconds()) {
+            config.setMaxTimeInSeconds(parameters.getMaxTimeInSeconds());
+            rest.clearMaxTimeInSeconds();
+        }
+        if (parameters.hasMaxDeterministicTime()) {
+            config.setMaxDeterministicTime(parameters.getMaxDeterministicTime());
+            rest.clearMaxDeterministicTime();
+        }
+        rest.clearLogSearchProgress();
+        rest.clearLogToStdout();
+        if (!rest.build().equals(SatParameters.getDefaultInstance())) {
+            config.setBaseParameters(rest.build());
+        }
+        return config;
+    }
+}
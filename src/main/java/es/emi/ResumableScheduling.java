@@ -0,0 +1,158 @@
+package es.emi;
+
+import com.google.ortools.sat.*;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Resumable mode: a piece may pause over a break and continue in the next slot.
+// Pieces live on each machine's productive-time axis, where breaks take no time, so no
+// per-slot membership literal is needed. Only the makespan is mapped back to wall-clock
+// time, with one literal per machine slot.
+public class ResumableScheduling {
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals) {
+        ScheduleResult result = solver(numMachines, numPieces, cycleTimes, productiveIntervals, SolverConfig.allCores());
+        result.print();
+        return result;
+    }
+
+    public static ScheduleResult solver(int numMachines, int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals,
+                                        SolverConfig config) {
+        NativeRuntime.load();
+
+        ZonedDateTime referencePoint = findEarliestStart(productiveIntervals);
+        ProductiveTimeAxis[] axes = new ProductiveTimeAxis[numMachines];
+        int maxEnd = 0;
+        for (int m = 0; m < numMachines; m++) {
+            axes[m] = ProductiveTimeAxis.fromIntervals(preprocessIntervals(productiveIntervals[m], referencePoint));
+            if (axes[m].getNumSlots() > 0) {
+                maxEnd = (int) Math.max(maxEnd, axes[m].getSlotEnd(axes[m].getNumSlots() - 1));
+            }
+        }
+
+        // Capacity pre-check, infeasible requests return before any model is built
+        CapacityCheck capacity = CapacityCheck.forResumable(numPieces, cycleTimes, productiveIntervals, referencePoint, maxEnd);
+        if (!capacity.isFeasible()) {
+            return ScheduleResult.rejected(capacity, referencePoint.toEpochSecond());
+        }
+
+        // Initialize model
+        CpModel model = new CpModel();
+        IntVar[][] startTimes = new IntVar[numMachines][numPieces];
+        IntVar[][] endTimes = new IntVar[numMachines][numPieces];
+        BoolVar[][] isTaskActive = new BoolVar[numMachines][numPieces];
+
+        // Pieces on the productive axis of their machine
+        IntVar[] productiveEnds = new IntVar[numMachines];
+        for (int m = 0; m < numMachines; m++) {
+            long totalProductive = axes[m].getTotalProductive();
+            IntervalVar[] tasks = new IntervalVar[numPieces];
+            productiveEnds[m] = model.newIntVar(0, totalProductive, "productiveEnd_machine_" + m);
+
+            for (int i = 0; i < numPieces; i++) {
+                startTimes[m][i] = model.newIntVar(0, totalProductive, "start_machine_" + m + "_piece_" + i);
+                endTimes[m][i] = model.newIntVar(0, totalProductive, "end_machine_" + m + "_piece_" + i);
+                isTaskActive[m][i] = model.newBoolVar("isActive_machine_" + m + "_piece_" + i);
+                tasks[i] = model.newOptionalIntervalVar(startTimes[m][i], LinearExpr.constant(cycleTimes[m]), endTimes[m][i],
+                        isTaskActive[m][i], "task_machine_" + m + "_piece_" + i);
+                model.addLessOrEqual(endTimes[m][i], productiveEnds[m]).onlyEnforceIf(isTaskActive[m][i]);
+            }
+
+            model.addNoOverlap(tasks);
+        }
+
+        // Ensure each piece is assigned to exactly one machine
+        for (int i = 0; i < numPieces; i++) {
+            BoolVar[] assignment = new BoolVar[numMachines];
+            for (int m = 0; m < numMachines; m++) {
+                assignment[m] = isTaskActive[m][i];
+            }
+            model.addExactlyOne(assignment);
+        }
+
+        // Objective: minimize the wall-clock makespan, never below the productive-capacity bound
+        long lowerBound = MakespanBound.productiveBound(cycleTimes, axes, numPieces);
+        IntVar makespan = model.newIntVar(Math.min(Math.max(lowerBound, 0), maxEnd), maxEnd, "makespan");
+        for (int m = 0; m < numMachines; m++) {
+            IntVar wallEnd = addWallClockEnd(model, m, axes[m], productiveEnds[m], maxEnd);
+            model.addGreaterOrEqual(makespan, wallEnd);
+        }
+        model.minimize(makespan);
+
+        CpSolver solver = new CpSolver();
+        CpSolverStatus status = config.solve(solver, model);
+
+        return decode(status, solver, axes, startTimes, endTimes, isTaskActive, referencePoint);
+    }
+
+    // wallEnd = slotStart + productiveEnd - cumulative for the slot holding productiveEnd, or 0 for an idle machine
+    private static IntVar addWallClockEnd(CpModel model, int m, ProductiveTimeAxis axis, IntVar productiveEnd, int maxEnd) {
+        IntVar wallEnd = model.newIntVar(0, maxEnd, "wallEnd_machine_" + m);
+        List<Literal> choices = new ArrayList<>();
+
+        BoolVar idle = model.newBoolVar("idle_machine_" + m);
+        model.addEquality(productiveEnd, 0).onlyEnforceIf(idle);
+        model.addEquality(wallEnd, 0).onlyEnforceIf(idle);
+        choices.add(idle);
+
+        for (int k = 0; k < axis.getNumSlots(); k++) {
+            long cumulative = axis.getCumulative(k);
+            long slotLength = axis.getSlotEnd(k) - axis.getSlotStart(k);
+            if (slotLength == 0) {
+                continue;
+            }
+
+            BoolVar inSlot = model.newBoolVar("endSlot_machine_" + m + "_slot_" + k);
+            model.addLinearConstraint(productiveEnd, cumulative, cumulative + slotLength).onlyEnforceIf(inSlot);
+            model.addEquality(wallEnd, LinearExpr.affine(productiveEnd, 1, axis.getSlotStart(k) - cumulative)).onlyEnforceIf(inSlot);
+            choices.add(inSlot);
+        }
+
+        model.addExactlyOne(choices);
+        return wallEnd;
+    }
+
+    private static ScheduleResult decode(CpSolverStatus status, CpSolver solver, ProductiveTimeAxis[] axes, IntVar[][] startTimes,
+                                         IntVar[][] endTimes, BoolVar[][] isTaskActive, ZonedDateTime referencePoint) {
+        ScheduleResult.Builder builder = new ScheduleResult.Builder(axes.length);
+
+        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
+            for (int m = 0; m < axes.length; m++) {
+                for (int i = 0; i < startTimes[m].length; i++) {
+                    if (solver.booleanValue(isTaskActive[m][i])) {
+                        // Back to wall-clock time, the task spans any break it was paused over
+                        builder.addTask(m, i, axes[m].toWallClockStart(solver.value(startTimes[m][i])),
+                                axes[m].toWallClockEnd(solver.value(endTimes[m][i])));
+                    }
+                }
+            }
+            // The objective is the makespan
+            builder.setLowerBound((long) Math.ceil(solver.bestObjectiveBound()));
+        }
+
+        return builder.build(status, referencePoint.toEpochSecond(), solver.wallTime());
+    }
+
+    private static int[][] preprocessIntervals(ZonedDateTime[][] calendar, ZonedDateTime referencePoint) {
+        // Every slot counts, pieces no longer have to fit in a single one
+        int[][] intervals = new int[calendar.length][];
+        for (int j = 0; j < calendar.length; j++) {
+            intervals[j] = new int[]{
+                    (int) ChronoUnit.SECONDS.between(referencePoint, calendar[j][0]),
+                    (int) ChronoUnit.SECONDS.between(referencePoint, calendar[j][1])};
+        }
+        return intervals;
+    }
+
+    private static ZonedDateTime findEarliestStart(ZonedDateTime[][][] productiveIntervals) {
+        return Arrays.stream(productiveIntervals)
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream)
+                .min(ZonedDateTime::compareTo)
+                .orElseThrow(() -> new IllegalArgumentException("No intervals provided"));
+    }
+}
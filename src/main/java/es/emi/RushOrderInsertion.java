@@ -0,0 +1,433 @@
+package es.emi;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Places urgent pieces into a published schedule without solving again. Keys of the MachineScheduledJobs
+// are machine positions in the list, as ScheduleResult.toMachineScheduledJobs writes them, and each
+// calendar holds the tasks of that machine. Every machine keeps an index of its free productive time:
+// calendar slots minus tasks, with two segment trees over the slots holding the longest gap and the total
+// free time per slot, so finding the first slot that can take a piece costs O(log slots) and only that
+// slot's tasks are looked at. Each piece goes to the machine where it completes earliest. With shifting,
+// a piece may also go in front of tasks of a slot, which then move later inside that slot; tasks never
+// leave their slot and tasks spanning a break never move. The published schedule is updated in place and
+// insert returns only the tasks it created or moved; an order whose pieces do not all fit leaves it
+// unchanged. Moved tasks are the same objects with new times, so a ScheduledTask keeps its piece id; the
+// inserted ones are plain TimeSlots, identified by their Change. Not thread safe.
+public class RushOrderInsertion {
+
+    private final MachineScheduledJobs schedule;
+    private final List<Machine> machines;
+    private final FreeCapacity[] capacities;
+    private boolean shiftTasks;
+
+    public RushOrderInsertion(MachineScheduledJobs schedule, List<Machine> machines) {
+        this.schedule = schedule;
+        this.machines = machines;
+        this.capacities = new FreeCapacity[machines.size()];
+
+        for (int m = 0; m < machines.size(); m++) {
+            Calendar tasks = schedule.getSchedule().get(m);
+            if (tasks == null) {
+                tasks = new Calendar(new ArrayList<>());
+                schedule.addCalendar(m, tasks);
+            } else {
+                // Inserted tasks go into this list, it may be an immutable view
+                tasks.setSlots(new ArrayList<>(tasks.getSlots()));
+                tasks.getSlots().sort(Comparator.comparing(TimeSlot::getStartTime));
+            }
+            capacities[m] = new FreeCapacity(machines.get(m).getSlots(), tasks);
+        }
+    }
+
+    public MachineScheduledJobs getSchedule() {
+        return schedule;
+    }
+
+    public boolean isShiftTasks() {
+        return shiftTasks;
+    }
+
+    public void setShiftTasks(boolean shiftTasks) {
+        this.shiftTasks = shiftTasks;
+    }
+
+    // Pieces can start at the earliest slot of any machine
+    public List<Change> insert(Job job, int quantity) {
+        return insert(job, quantity, null);
+    }
+
+    // Places the pieces one after another, none of them starts before release
+    public List<Change> insert(Job job, int quantity, ZonedDateTime release) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        long releaseSecond = release == null ? Long.MIN_VALUE : release.toEpochSecond();
+        int[] processingTimes = new int[capacities.length];
+        for (int m = 0; m < capacities.length; m++) {
+            processingTimes[m] = job.getProcessingTime(machines.get(m));
+            if (processingTimes[m] <= 0) {
+                throw new IllegalArgumentException("Job has no positive processing time on machine " + machines.get(m).getId());
+            }
+        }
+
+        // A task moved twice in one order is reported once, with the times it had before the order
+        Map<TimeSlot, Change> changes = new LinkedHashMap<>();
+        for (int piece = 0; piece < quantity; piece++) {
+            Placement best = null;
+            for (int m = 0; m < capacities.length; m++) {
+                Placement placement = capacities[m].earliest(releaseSecond, processingTimes[m], shiftTasks);
+                if (placement != null && (best == null || placement.end < best.end)) {
+                    placement.machine = m;
+                    best = placement;
+                }
+            }
+            if (best == null) {
+                // The order is all or nothing, the pieces placed so far are taken out again
+                undo(changes.values());
+                throw new IllegalStateException("Piece " + piece + " of the rush order fits in no free capacity after "
+                        + (release == null ? "the first slot" : release) + ", the schedule is unchanged");
+            }
+            capacities[best.machine].apply(best, piece, changes);
+        }
+        return new ArrayList<>(changes.values());
+    }
+
+    private void undo(Collection<Change> changes) {
+        Map<Integer, List<Change>> byMachine = new LinkedHashMap<>();
+        for (Change change : changes) {
+            byMachine.computeIfAbsent(change.getMachine(), m -> new ArrayList<>()).add(change);
+        }
+        for (Map.Entry<Integer, List<Change>> entry : byMachine.entrySet()) {
+            capacities[entry.getKey()].undo(entry.getValue());
+        }
+    }
+
+    // A task created or moved by an insertion
+    public static class Change {
+
+        private final int machine;
+        private final TimeSlot task;
+        private final int piece;
+        private final ZonedDateTime previousStart;
+        private final ZonedDateTime previousEnd;
+
+        Change(int machine, TimeSlot task, int piece, ZonedDateTime previousStart, ZonedDateTime previousEnd) {
+            this.machine = machine;
+            this.task = task;
+            this.piece = piece;
+            this.previousStart = previousStart;
+            this.previousEnd = previousEnd;
+        }
+
+        // Key of the machine in the published schedule
+        public int getMachine() {
+            return machine;
+        }
+
+        // The task as it is now in the published schedule
+        public TimeSlot getTask() {
+            return task;
+        }
+
+        public boolean isInserted() {
+            return previousStart == null;
+        }
+
+        // Position of the piece in the rush order, -1 for a task that was moved
+        public int getPiece() {
+            return piece;
+        }
+
+        public ZonedDateTime getPreviousStart() {
+            return previousStart;
+        }
+
+        public ZonedDateTime getPreviousEnd() {
+            return previousEnd;
+        }
+
+        @Override
+        public String toString() {
+            return isInserted()
+                    ? String.format("machine %d: piece %d inserted at %s", machine, piece, task)
+                    : String.format("machine %d: moved from %s to %s", machine, previousStart, task);
+        }
+    }
+
+    private static class Placement {
+
+        private int machine;
+        private final int slot;
+        private final long start;
+        private final long end;
+
+        Placement(int slot, long start, long end) {
+            this.slot = slot;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // Free productive time of one machine, in epoch seconds
+    private static class FreeCapacity {
+
+        private final long[] slotStarts;
+        private final long[] slotEnds;
+        private final ZoneId[] slotZones;
+        private final Calendar published;
+        // Tasks by start, tasks never overlap so starts are unique
+        private final TreeMap<Long, TimeSlot> tasks = new TreeMap<>();
+        private final SlotTree longestGap;
+        private final SlotTree freeTime;
+
+        FreeCapacity(List<TimeSlot> slots, Calendar published) {
+            this.published = published;
+            List<TimeSlot> sorted = new ArrayList<>(slots);
+            sorted.sort(Comparator.comparing(TimeSlot::getStartTime));
+            slotStarts = new long[sorted.size()];
+            slotEnds = new long[sorted.size()];
+            slotZones = new ZoneId[sorted.size()];
+            for (int j = 0; j < sorted.size(); j++) {
+                slotStarts[j] = sorted.get(j).getStartTimeInSeconds();
+                slotEnds[j] = sorted.get(j).getEndTimeInSeconds();
+                slotZones[j] = sorted.get(j).getStartTime().getZone();
+                if (j > 0 && slotStarts[j] < slotEnds[j - 1]) {
+                    throw new IllegalArgumentException("Calendar slots must not overlap, see slot " + j);
+                }
+            }
+
+            for (TimeSlot task : published.getSlots()) {
+                if (task.getEndTimeInSeconds() > task.getStartTimeInSeconds()) {
+                    tasks.put(task.getStartTimeInSeconds(), task);
+                }
+            }
+
+            longestGap = new SlotTree(slotStarts.length);
+            freeTime = new SlotTree(slotStarts.length);
+            for (int j = 0; j < slotStarts.length; j++) {
+                update(j);
+            }
+        }
+
+        // Earliest completion of a piece of the given length starting at release or later
+        Placement earliest(long release, int length, boolean shift) {
+            // First slot that ends after the release
+            int first = Arrays.binarySearch(slotEnds, release);
+            first = first >= 0 ? first + 1 : -first - 1;
+            if (first >= slotStarts.length) {
+                return null;
+            }
+
+            Placement placement = shift ? shiftedFit(first, release, length) : gapFit(first, release, length);
+            if (placement != null) {
+                return placement;
+            }
+            // Later slots start after the release, the trees tell which one is first to have room
+            int slot = (shift ? freeTime : longestGap).firstAtLeast(first + 1, length);
+            if (slot < 0) {
+                return null;
+            }
+            return shift ? shiftedFit(slot, slotStarts[slot], length) : gapFit(slot, slotStarts[slot], length);
+        }
+
+        // First gap of the slot that holds the piece from the release on
+        private Placement gapFit(int slot, long release, int length) {
+            long slotEnd = slotEnds[slot];
+            long cursor = slotStarts[slot];
+            for (long[] busy : occupied(slot)) {
+                long start = Math.max(cursor, release);
+                if (busy[0] - start >= length) {
+                    return new Placement(slot, start, start + length);
+                }
+                cursor = Math.max(cursor, busy[1]);
+            }
+            long start = Math.max(cursor, release);
+            return slotEnd - start >= length ? new Placement(slot, start, start + length) : null;
+        }
+
+        // First free point of the slot from the release on, if the free time after it holds the piece
+        private Placement shiftedFit(int slot, long release, int length) {
+            long slotEnd = slotEnds[slot];
+            long start = Math.max(slotStarts[slot], release);
+            long free = 0;
+            boolean placed = false;
+            long cursor = start;
+            for (long[] busy : occupied(slot)) {
+                if (busy[1] <= cursor) {
+                    continue;
+                }
+                if (!placed) {
+                    if (busy[0] <= cursor) {
+                        // Inside a task, the piece can only go after it
+                        cursor = busy[1];
+                        start = cursor;
+                        continue;
+                    }
+                    placed = true;
+                }
+                free += busy[0] - cursor;
+                cursor = busy[1];
+            }
+            free += Math.max(slotEnd - cursor, 0);
+            if (start >= slotEnd || free < length) {
+                return null;
+            }
+            return new Placement(slot, start, start + length);
+        }
+
+        // Busy intervals clipped to the slot, in time order
+        private List<long[]> occupied(int slot) {
+            long slotStart = slotStarts[slot];
+            long slotEnd = slotEnds[slot];
+            List<long[]> busy = new ArrayList<>();
+            Map.Entry<Long, TimeSlot> before = tasks.lowerEntry(slotStart);
+            if (before != null && before.getValue().getEndTimeInSeconds() > slotStart) {
+                busy.add(new long[]{slotStart, Math.min(before.getValue().getEndTimeInSeconds(), slotEnd)});
+            }
+            for (TimeSlot task : tasks.subMap(slotStart, true, slotEnd, false).values()) {
+                busy.add(new long[]{task.getStartTimeInSeconds(), Math.min(task.getEndTimeInSeconds(), slotEnd)});
+            }
+            return busy;
+        }
+
+        void apply(Placement placement, int piece, Map<TimeSlot, Change> changes) {
+            // Tasks from the start on move just enough to make room, the free time found absorbs the push
+            List<TimeSlot> moved = new ArrayList<>();
+            long pushedTo = placement.end;
+            for (TimeSlot task : tasks.subMap(placement.start, true, slotEnds[placement.slot], false).values()) {
+                if (task.getStartTimeInSeconds() >= pushedTo) {
+                    break;
+                }
+                if (task.getEndTimeInSeconds() > slotEnds[placement.slot]) {
+                    throw new IllegalStateException("Task " + task + " spans a break and cannot move");
+                }
+                moved.add(task);
+                pushedTo += task.getEndTimeInSeconds() - task.getStartTimeInSeconds();
+            }
+
+            long cursor = placement.end;
+            for (TimeSlot task : moved) {
+                tasks.remove(task.getStartTimeInSeconds());
+            }
+            for (TimeSlot task : moved) {
+                long delta = cursor - task.getStartTimeInSeconds();
+                changes.putIfAbsent(task, new Change(placement.machine, task, -1, task.getStartTime(), task.getEndTime()));
+                task.setStartTime(task.getStartTime().plusSeconds(delta));
+                task.setEndTime(task.getEndTime().plusSeconds(delta));
+                tasks.put(task.getStartTimeInSeconds(), task);
+                cursor = task.getEndTimeInSeconds();
+            }
+
+            // The new task takes the zone of the calendar slot it goes into
+            ZonedDateTime start = ZonedDateTime.ofInstant(Instant.ofEpochSecond(placement.start), slotZones[placement.slot]);
+            TimeSlot inserted = new TimeSlot(start, start.plusSeconds(placement.end - placement.start));
+            tasks.put(placement.start, inserted);
+            changes.put(inserted, new Change(placement.machine, inserted, piece, null, null));
+
+            List<TimeSlot> list = published.getSlots();
+            int position = Collections.binarySearch(list, inserted, Comparator.comparing(TimeSlot::getStartTime));
+            list.add(position >= 0 ? position : -position - 1, inserted);
+
+            update(placement.slot);
+        }
+
+        // Takes inserted tasks out and puts moved ones back at their previous times. Everything changed leaves
+        // the index first, a moved task may have taken the start another one goes back to
+        void undo(List<Change> changes) {
+            Set<TimeSlot> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Change change : changes) {
+                tasks.remove(change.getTask().getStartTimeInSeconds());
+                if (change.isInserted()) {
+                    inserted.add(change.getTask());
+                }
+            }
+            published.getSlots().removeIf(inserted::contains);
+
+            for (Change change : changes) {
+                TimeSlot task = change.getTask();
+                int slot = slotOf(task.getStartTimeInSeconds());
+                if (!change.isInserted()) {
+                    task.setStartTime(change.getPreviousStart());
+                    task.setEndTime(change.getPreviousEnd());
+                    tasks.put(task.getStartTimeInSeconds(), task);
+                }
+                update(slot);
+            }
+        }
+
+        // Calendar slot holding the second, changed tasks always start inside one
+        private int slotOf(long second) {
+            int slot = Arrays.binarySearch(slotStarts, second);
+            return slot >= 0 ? slot : -slot - 2;
+        }
+
+        private void update(int slot) {
+            long cursor = slotStarts[slot];
+            long longest = 0;
+            long free = 0;
+            for (long[] busy : occupied(slot)) {
+                longest = Math.max(longest, busy[0] - cursor);
+                free += Math.max(busy[0] - cursor, 0);
+                cursor = Math.max(cursor, busy[1]);
+            }
+            longest = Math.max(longest, slotEnds[slot] - cursor);
+            free += Math.max(slotEnds[slot] - cursor, 0);
+            longestGap.set(slot, longest);
+            freeTime.set(slot, free);
+        }
+    }
+
+    // Maximum segment tree over the slots of one machine
+    private static class SlotTree {
+
+        private final int size;
+        private final long[] tree;
+
+        SlotTree(int numSlots) {
+            int size = 1;
+            while (size < numSlots) {
+                size <<= 1;
+            }
+            this.size = size;
+            this.tree = new long[2 * size];
+        }
+
+        void set(int slot, long value) {
+            int node = slot + size;
+            tree[node] = value;
+            for (node >>= 1; node > 0; node >>= 1) {
+                tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        // Lowest slot from 'from' on whose value reaches at least 'value', -1 when there is none
+        int firstAtLeast(int from, long value) {
+            return find(1, 0, size - 1, from, value);
+        }
+
+        private int find(int node, int low, int high, int from, long value) {
+            if (high < from || tree[node] < value) {
+                return -1;
+            }
+            if (low == high) {
+                return low;
+            }
+            int middle = (low + high) >>> 1;
+            int left = find(2 * node, low, middle, from, value);
+            return left >= 0 ? left : find(2 * node + 1, middle + 1, high, from, value);
+        }
+    }
+}
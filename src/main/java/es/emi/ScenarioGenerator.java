@@ -0,0 +1,159 @@
+package es.emi;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Seeded plant scenarios, the same seed always gives the same instance. Unlike
+// Main.generateMachinesCalendars the machines differ: a skewed machine count, mixed cycle times, one to
+// three shifts a day with jittered starts, days off, lunch breaks and maintenance holes cut into shifts.
+// Pieces are a share of the total capacity, at most maxPieces so the slot models stay small.
+public class ScenarioGenerator {
+
+    private static final ZonedDateTime START = ZonedDateTime.of(LocalDate.of(2024, 8, 5), LocalTime.of(0, 0), ZoneId.of("UTC"));
+    private static final int[] CYCLE_TIMES = {300, 600, 900, 1200, 1800, 2700, 3600};
+    private static final int SHIFT_SECONDS = 8 * 3600;
+    private static final int STEP_SECONDS = 300;
+
+    private int days = 3;
+    private int maxMachines = 10;
+    private int maxPieces = 40;
+    // Share of the capacity to fill, jittered per scenario
+    private double load = 0.5;
+    private double dayOffProbability = 0.15;
+    private double breakProbability = 0.5;
+    private double maintenanceProbability = 0.2;
+
+    public SchedulingInstance generate(long seed) {
+        // Unlike Random, consecutive seeds give unrelated sequences
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // Most plants are small, a few are large
+        double skew = random.nextDouble();
+        int numMachines = 1 + (int) (maxMachines * skew * skew);
+
+        int[] cycleTimes = new int[numMachines];
+        ZonedDateTime[][][] productiveIntervals = new ZonedDateTime[numMachines][][];
+        long capacity = 0;
+
+        for (int m = 0; m < numMachines; m++) {
+            cycleTimes[m] = CYCLE_TIMES[random.nextInt(CYCLE_TIMES.length)];
+            int shiftsPerDay = 1 + random.nextInt(3);
+            // Up to an hour earlier or later than the plant's shift pattern
+            int jitter = (random.nextInt(25) - 12) * STEP_SECONDS;
+
+            List<ZonedDateTime[]> slots = new ArrayList<>();
+            for (int day = 0; day < days; day++) {
+                if (random.nextDouble() < dayOffProbability) {
+                    continue;
+                }
+                for (int shift = 0; shift < shiftsPerDay; shift++) {
+                    int start = day * 86400 + 6 * 3600 + shift * SHIFT_SECONDS + jitter;
+                    int end = start + SHIFT_SECONDS - random.nextInt(13) * STEP_SECONDS;
+                    capacity += addShift(slots, Math.max(start, 0), end, cycleTimes[m], random);
+                }
+            }
+            productiveIntervals[m] = slots.toArray(new ZonedDateTime[0][]);
+        }
+
+        double share = load * (0.75 + 0.5 * random.nextDouble());
+        int numPieces = (int) Math.max(1, Math.min(maxPieces, Math.round(Math.min(capacity, 2L * maxPieces) * share)));
+        return new SchedulingInstance(numPieces, cycleTimes, productiveIntervals, days * 86400 + 6 * 3600 + 3 * SHIFT_SECONDS);
+    }
+
+    // Splits the shift around a lunch break and a maintenance hole, returns the pieces it holds
+    private long addShift(List<ZonedDateTime[]> slots, int start, int end, int cycleTime, SplittableRandom random) {
+        List<int[]> parts = new ArrayList<>();
+        parts.add(new int[]{start, end});
+
+        if (random.nextDouble() < breakProbability) {
+            int middle = start + (end - start) / 2;
+            parts = cut(parts, middle - 900, middle + 900);
+        }
+        if (random.nextDouble() < maintenanceProbability) {
+            int length = (6 + random.nextInt(19)) * STEP_SECONDS;
+            int holeStart = start + random.nextInt(Math.max((end - start - length) / STEP_SECONDS, 1)) * STEP_SECONDS;
+            parts = cut(parts, holeStart, holeStart + length);
+        }
+
+        long pieces = 0;
+        for (int[] part : parts) {
+            slots.add(new ZonedDateTime[]{START.plusSeconds(part[0]), START.plusSeconds(part[1])});
+            pieces += (part[1] - part[0]) / cycleTime;
+        }
+        return pieces;
+    }
+
+    private static List<int[]> cut(List<int[]> parts, int holeStart, int holeEnd) {
+        List<int[]> remaining = new ArrayList<>();
+        for (int[] part : parts) {
+            if (holeStart > part[0]) {
+                remaining.add(new int[]{part[0], Math.min(part[1], holeStart)});
+            }
+            if (holeEnd < part[1]) {
+                remaining.add(new int[]{Math.max(part[0], holeEnd), part[1]});
+            }
+        }
+        return remaining;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    public int getMaxMachines() {
+        return maxMachines;
+    }
+
+    public void setMaxMachines(int maxMachines) {
+        this.maxMachines = maxMachines;
+    }
+
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    public void setMaxPieces(int maxPieces) {
+        this.maxPieces = maxPieces;
+    }
+
+    public double getLoad() {
+        return load;
+    }
+
+    public void setLoad(double load) {
+        this.load = load;
+    }
+
+    public double getDayOffProbability() {
+        return dayOffProbability;
+    }
+
+    public void setDayOffProbability(double dayOffProbability) {
+        this.dayOffProbability = dayOffProbability;
+    }
+
+    public double getBreakProbability() {
+        return breakProbability;
+    }
+
+    public void setBreakProbability(double breakProbability) {
+        this.breakProbability = breakProbability;
+    }
+
+    public double getMaintenanceProbability() {
+        return maintenanceProbability;
+    }
+
+    public void setMaintenanceProbability(double maintenanceProbability) {
+        this.maintenanceProbability = maintenanceProbability;
+    }
+}
@@ -0,0 +1,20 @@
+package es.emi;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public interface ScheduleExporter {
+
+    // Writes the whole schedule, the channel stays open
+    void export(ScheduleResult result, WritableByteChannel channel) throws IOException;
+
+    default void export(ScheduleResult result, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            export(result, channel);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package es.emi;
+
+import com.google.ortools.sat.BoolVar;
+import com.google.ortools.sat.CpSolver;
+import com.google.ortools.sat.CpSolverStatus;
+import com.google.ortools.sat.IntVar;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ScheduleResult {
+
+    private final CpSolverStatus status;
+    private final long referenceEpochSecond;
+    private final double wallTime;
+
+    // Per machine, sorted by start time. Times are seconds from the reference point
+    private final int[][] pieces;
+    private final long[][] starts;
+    private final long[][] ends;
+    private final long makespan;
+    // Proven lower bound on the makespan, 0 when nothing is known
+    private final long lowerBound;
+    // Set when the engine ran the capacity pre-check, explains a rejection
+    private final CapacityCheck capacityCheck;
+
+    private ScheduleResult(CpSolverStatus status, long referenceEpochSecond, double wallTime,
+                           int[][] pieces, long[][] starts, long[][] ends, long lowerBound, CapacityCheck capacityCheck) {
+        this.status = status;
+        this.referenceEpochSecond = referenceEpochSecond;
+        this.wallTime = wallTime;
+        this.pieces = pieces;
+        this.starts = starts;
+        this.ends = ends;
+
+        long last = 0;
+        for (long[] machineEnds : ends) {
+            if (machineEnds.length > 0) {
+                last = Math.max(last, machineEnds[machineEnds.length - 1]);
+            }
+        }
+        this.makespan = last;
+        this.lowerBound = Math.min(lowerBound, last);
+        this.capacityCheck = capacityCheck;
+    }
+
+    // Returned without building a model when the calendars cannot hold the pieces
+    public static ScheduleResult rejected(CapacityCheck check, long referenceEpochSecond) {
+        return new Builder(check.getNumMachines())
+                .setCapacityCheck(check)
+                .build(CpSolverStatus.INFEASIBLE, referenceEpochSecond, 0);
+    }
+
+    public static ScheduleResult fromSolver(CpSolverStatus status, CpSolver solver, IntVar[][] startTimes, IntVar[][] endTimes,
+                                            BoolVar[][] isTaskActive, ZonedDateTime referencePoint) {
+        Builder builder = new Builder(startTimes.length);
+
+        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
+            for (int m = 0; m < startTimes.length; m++) {
+                for (int i = 0; i < startTimes[m].length; i++) {
+                    if (solver.booleanValue(isTaskActive[m][i])) {
+                        builder.addTask(m, i, solver.value(startTimes[m][i]), solver.value(endTimes[m][i]));
+                    }
+                }
+            }
+            // The objective is the makespan
+            builder.setLowerBound((long) Math.ceil(solver.bestObjectiveBound()));
+        }
+
+        return builder.build(status, referencePoint.toEpochSecond(), solver.wallTime());
+    }
+
+    public boolean hasSolution() {
+        return status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE;
+    }
+
+    public CpSolverStatus getStatus() {
+        return status;
+    }
+
+    public long getReferenceEpochSecond() {
+        return referenceEpochSecond;
+    }
+
+    public ZonedDateTime getReferencePoint() {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(referenceEpochSecond), ZoneOffset.UTC);
+    }
+
+    public double getWallTime() {
+        return wallTime;
+    }
+
+    public long getMakespan() {
+        return makespan;
+    }
+
+    public CapacityCheck getCapacityCheck() {
+        return capacityCheck;
+    }
+
+    public long getLowerBound() {
+        return lowerBound;
+    }
+
+    // Relative distance of the makespan to the lower bound, 0 once proven optimal
+    public double getGap() {
+        return makespan == 0 ? 0.0 : (double) (makespan - lowerBound) / makespan;
+    }
+
+    public int getNumMachines() {
+        return pieces.length;
+    }
+
+    public int getNumTasks() {
+        int tasks = 0;
+        for (int[] machinePieces : pieces) {
+            tasks += machinePieces.length;
+        }
+        return tasks;
+    }
+
+    public int getTaskCount(int machine) {
+        return pieces[machine].length;
+    }
+
+    public int[] getPieces(int machine) {
+        return pieces[machine];
+    }
+
+    public long[] getStarts(int machine) {
+        return starts[machine];
+    }
+
+    public long[] getEnds(int machine) {
+        return ends[machine];
+    }
+
+    // Piece being processed on the machine at time t, or -1 when the machine is idle
+    public int pieceAt(int machine, long t) {
+        int index = taskIndexAt(machine, t);
+        return index < 0 ? -1 : pieces[machine][index];
+    }
+
+    // Position of the task covering t in the machine arrays, or -1
+    public int taskIndexAt(int machine, long t) {
+        long[] machineStarts = starts[machine];
+        int index = Arrays.binarySearch(machineStarts, t);
+
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Several zero length tasks may share a start, keep the last one
+            while (index + 1 < machineStarts.length && machineStarts[index + 1] == t) {
+                index++;
+            }
+        }
+
+        return index >= 0 && t < ends[machine][index] ? index : -1;
+    }
+
+    public long getBusyTime(int machine) {
+        long busy = 0;
+        for (int k = 0; k < starts[machine].length; k++) {
+            busy += ends[machine][k] - starts[machine][k];
+        }
+        return busy;
+    }
+
+    // Machines with at least one task
+    public int getMachinesUsed() {
+        int used = 0;
+        for (int[] machinePieces : pieces) {
+            if (machinePieces.length > 0) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    // Time between the reference point and the last end of each used machine that is not spent on tasks
+    public long getIdleTime() {
+        long idle = 0;
+        for (int m = 0; m < pieces.length; m++) {
+            if (pieces[m].length > 0) {
+                idle += ends[m][ends[m].length - 1] - getBusyTime(m);
+            }
+        }
+        return idle;
+    }
+
+    // Busy share of the machine between the reference point and the makespan
+    public double getUtilisation(int machine) {
+        return makespan == 0 ? 0.0 : (double) getBusyTime(machine) / makespan;
+    }
+
+    // Keyed by machine position, every task is a ScheduledTask carrying its piece id
+    public MachineScheduledJobs toMachineScheduledJobs() {
+        MachineScheduledJobs jobs = new MachineScheduledJobs();
+
+        for (int m = 0; m < pieces.length; m++) {
+            List<TimeSlot> slots = new ArrayList<>(pieces[m].length);
+            for (int k = 0; k < pieces[m].length; k++) {
+                slots.add(new ScheduledTask(toDateTime(starts[m][k]), toDateTime(ends[m][k]), pieces[m][k]));
+            }
+            jobs.addCalendar(m, new Calendar(slots));
+        }
+
+        return jobs;
+    }
+
+    public ZonedDateTime toDateTime(long seconds) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(referenceEpochSecond + seconds), ZoneOffset.UTC);
+    }
+
+    // Console output of the legacy solver entry points, buffered instead of one printf per task
+    public void print() {
+        if (!hasSolution()) {
+            System.out.println("No feasible solution found.");
+            if (capacityCheck != null && !capacityCheck.isFeasible()) {
+                System.out.print(capacityCheck.getReport());
+            }
+            return;
+        }
+
+        System.out.println("Solution found:");
+        try {
+            new CsvScheduleExporter().export(this, Channels.newChannel(System.out));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write schedule to stdout", e);
+        }
+        System.out.println("Makespan: " + toDateTime(makespan));
+        System.out.printf("Lower bound: %s (gap %.2f%%)%n", toDateTime(lowerBound), getGap() * 100);
+    }
+
+    public static class Builder {
+
+        private final int[][] pieces;
+        private final long[][] starts;
+        private final long[][] ends;
+        private final int[] counts;
+        private long lowerBound;
+        private CapacityCheck capacityCheck;
+
+        public Builder(int numMachines) {
+            this.pieces = new int[numMachines][8];
+            this.starts = new long[numMachines][8];
+            this.ends = new long[numMachines][8];
+            this.counts = new int[numMachines];
+        }
+
+        public Builder addTask(int machine, int piece, long start, long end) {
+            if (start < 0 || start > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Task start out of range: " + start);
+            }
+
+            int count = counts[machine];
+            if (count == pieces[machine].length) {
+                pieces[machine] = Arrays.copyOf(pieces[machine], count * 2);
+                starts[machine] = Arrays.copyOf(starts[machine], count * 2);
+                ends[machine] = Arrays.copyOf(ends[machine], count * 2);
+            }
+
+            pieces[machine][count] = piece;
+            starts[machine][count] = start;
+            ends[machine][count] = end;
+            counts[machine] = count + 1;
+            return this;
+        }
+
+        public Builder setLowerBound(long lowerBound) {
+            this.lowerBound = Math.max(this.lowerBound, lowerBound);
+            return this;
+        }
+
+        public Builder setCapacityCheck(CapacityCheck capacityCheck) {
+            this.capacityCheck = capacityCheck;
+            return this;
+        }
+
+        public ScheduleResult build(CpSolverStatus status, long referenceEpochSecond, double wallTime) {
+            int numMachines = counts.length;
+            int[][] sortedPieces = new int[numMachines][];
+            long[][] sortedStarts = new long[numMachines][];
+            long[][] sortedEnds = new long[numMachines][];
+
+            for (int m = 0; m < numMachines; m++) {
+                int count = counts[m];
+
+                // Start in the high half, original position in the low half
+                long[] keys = new long[count];
+                for (int k = 0; k < count; k++) {
+                    keys[k] = (starts[m][k] << 32) | k;
+                }
+                Arrays.sort(keys);
+
+                sortedPieces[m] = new int[count];
+                sortedStarts[m] = new long[count];
+                sortedEnds[m] = new long[count];
+                for (int k = 0; k < count; k++) {
+                    int from = (int) keys[k];
+                    sortedPieces[m][k] = pieces[m][from];
+                    sortedStarts[m][k] = starts[m][from];
+                    sortedEnds[m][k] = ends[m][from];
+                }
+            }
+
+            return new ScheduleResult(status, referenceEpochSecond, wallTime, sortedPieces, sortedStarts, sortedEnds, lowerBound, capacityCheck);
+        }
+    }
+}
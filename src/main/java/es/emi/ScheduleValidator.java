@@ -0,0 +1,306 @@
+package es.emi;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Independent check of a schedule against the machine calendars, sharing no code with the engines:
+// every task lies inside one productive slot (resumable: starts and ends in productive time and gets
+// exactly its cycle time of productive time in between), tasks of a machine do not overlap, and every
+// piece is made exactly once. One sort per machine and a binary search per task, O(n log n + s log s).
+public final class ScheduleValidator {
+
+    // Violations kept in the report, the rest are only counted
+    public static final int MAX_VIOLATIONS = 100;
+
+    public enum Kind {
+        OUTSIDE_SLOT, WRONG_DURATION, OVERLAP, DUPLICATE_PIECE, PIECE_COUNT, MACHINE_COUNT
+    }
+
+    private ScheduleValidator() {
+    }
+
+    public static Report validate(ScheduleResult schedule, SchedulingInstance instance, boolean resumable) {
+        return validate(schedule, instance.getProductiveIntervals(), instance.getCycleTimes(), instance.getNumPieces(), resumable);
+    }
+
+    public static Report validate(ScheduleResult schedule, ZonedDateTime[][][] productiveIntervals, int[] cycleTimes, int numPieces,
+                                  boolean resumable) {
+        long[][][] slots = new long[productiveIntervals.length][][];
+        for (int m = 0; m < productiveIntervals.length; m++) {
+            slots[m] = new long[productiveIntervals[m].length][];
+            for (int j = 0; j < productiveIntervals[m].length; j++) {
+                slots[m][j] = new long[]{productiveIntervals[m][j][0].toEpochSecond(), productiveIntervals[m][j][1].toEpochSecond()};
+            }
+        }
+        return validate(schedule, slots, cycleTimes, numPieces, resumable);
+    }
+
+    // Machine speed is the cycle time, as in ProductionScheduling
+    public static Report validate(ScheduleResult schedule, List<Machine> machines, int numPieces, boolean resumable) {
+        long[][][] slots = new long[machines.size()][][];
+        int[] cycleTimes = new int[machines.size()];
+        for (int m = 0; m < machines.size(); m++) {
+            List<TimeSlot> machineSlots = machines.get(m).getCalendar().getSlots();
+            slots[m] = new long[machineSlots.size()][];
+            for (int j = 0; j < machineSlots.size(); j++) {
+                slots[m][j] = new long[]{machineSlots.get(j).getStartTimeInSeconds(), machineSlots.get(j).getEndTimeInSeconds()};
+            }
+            cycleTimes[m] = machines.get(m).getSpeed();
+        }
+        return validate(schedule, slots, cycleTimes, numPieces, resumable);
+    }
+
+    // Slots in epoch seconds per machine, in any order
+    public static Report validate(ScheduleResult schedule, long[][][] slots, int[] cycleTimes, int numPieces, boolean resumable) {
+        Report report = new Report();
+        if (schedule.getNumMachines() != slots.length) {
+            report.add(Kind.MACHINE_COUNT, -1, -1, 0, 0, -1,
+                    "schedule has " + schedule.getNumMachines() + " machines, calendars " + slots.length);
+            return report;
+        }
+
+        long reference = schedule.getReferenceEpochSecond();
+        BitSet seen = new BitSet(numPieces);
+        int tasks = 0;
+
+        for (int m = 0; m < slots.length; m++) {
+            MachineSlots calendar = new MachineSlots(slots[m]);
+            int[] pieces = schedule.getPieces(m);
+            long[] starts = schedule.getStarts(m);
+            long[] ends = schedule.getEnds(m);
+            tasks += pieces.length;
+
+            // Task order by start, the engines already deliver it sorted
+            Integer[] order = new Integer[pieces.length];
+            for (int k = 0; k < order.length; k++) {
+                order[k] = k;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+
+            long latestEnd = Long.MIN_VALUE;
+            int latestPiece = -1;
+            for (int k : order) {
+                int piece = pieces[k];
+                long start = reference + starts[k];
+                long end = reference + ends[k];
+
+                if (piece < 0 || piece >= numPieces || seen.get(piece)) {
+                    report.add(Kind.DUPLICATE_PIECE, m, piece, start, end, -1,
+                            piece < 0 || piece >= numPieces ? "piece id out of range" : "piece already made elsewhere");
+                } else {
+                    seen.set(piece);
+                }
+
+                if (start < latestEnd) {
+                    report.add(Kind.OVERLAP, m, piece, start, end, -1, "overlaps piece " + latestPiece + " ending at " + latestEnd);
+                }
+                if (end > latestEnd) {
+                    latestEnd = end;
+                    latestPiece = piece;
+                }
+
+                if (resumable) {
+                    calendar.checkResumable(report, m, piece, start, end, cycleTimes[m]);
+                } else {
+                    calendar.checkContained(report, m, piece, start, end, cycleTimes[m]);
+                }
+            }
+        }
+
+        if (tasks != numPieces) {
+            report.add(Kind.PIECE_COUNT, -1, -1, 0, 0, -1, tasks + " tasks for " + numPieces + " pieces");
+        }
+        return report;
+    }
+
+    // One machine's slots sorted by start, with the running maximum end so that containment also works
+    // for overlapping calendar entries, and the merged productive time for resumable tasks
+    private static final class MachineSlots {
+        private final long[] starts;
+        private final long[] ends;
+        private final long[] maxEnds;
+        private final int[] maxEndSlot;
+        private final ProductiveTimeAxis axis;
+
+        MachineSlots(long[][] slots) {
+            long[][] sorted = slots.clone();
+            Arrays.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+            int n = sorted.length;
+            starts = new long[n];
+            ends = new long[n];
+            maxEnds = new long[n];
+            maxEndSlot = new int[n];
+
+            List<long[]> merged = new ArrayList<>();
+            for (int j = 0; j < n; j++) {
+                starts[j] = sorted[j][0];
+                ends[j] = sorted[j][1];
+                boolean covered = j > 0 && maxEnds[j - 1] >= ends[j];
+                maxEnds[j] = covered ? maxEnds[j - 1] : ends[j];
+                maxEndSlot[j] = covered ? maxEndSlot[j - 1] : j;
+
+                if (!merged.isEmpty() && starts[j] <= merged.get(merged.size() - 1)[1]) {
+                    long[] last = merged.get(merged.size() - 1);
+                    last[1] = Math.max(last[1], ends[j]);
+                } else if (ends[j] > starts[j]) {
+                    merged.add(new long[]{starts[j], ends[j]});
+                }
+            }
+            long[] mergedStarts = new long[merged.size()];
+            long[] mergedEnds = new long[merged.size()];
+            for (int j = 0; j < merged.size(); j++) {
+                mergedStarts[j] = merged.get(j)[0];
+                mergedEnds[j] = merged.get(j)[1];
+            }
+            axis = new ProductiveTimeAxis(mergedStarts, mergedEnds);
+        }
+
+        // Last slot starting at or before t, -1 when none does
+        private int slotAtOrBefore(long t) {
+            int slot = Arrays.binarySearch(starts, t);
+            if (slot >= 0) {
+                while (slot + 1 < starts.length && starts[slot + 1] == t) {
+                    slot++;
+                }
+                return slot;
+            }
+            return -slot - 2;
+        }
+
+        void checkContained(Report report, int machine, int piece, long start, long end, int cycleTime) {
+            if (end - start != cycleTime) {
+                report.add(Kind.WRONG_DURATION, machine, piece, start, end, -1,
+                        "runs " + (end - start) + " s, cycle time is " + cycleTime + " s");
+            }
+            int slot = slotAtOrBefore(start);
+            if (slot < 0) {
+                report.add(Kind.OUTSIDE_SLOT, machine, piece, start, end, -1,
+                        starts.length == 0 ? "machine has no slots" : "starts before the first slot at " + starts[0]);
+            } else if (maxEnds[slot] < end) {
+                int nearest = maxEndSlot[slot];
+                report.add(Kind.OUTSIDE_SLOT, machine, piece, start, end, nearest,
+                        "not inside one slot, nearest slot " + nearest + " is [" + starts[nearest] + ", " + ends[nearest] + ")");
+            }
+        }
+
+        void checkResumable(Report report, int machine, int piece, long start, long end, int cycleTime) {
+            int first = slotAtOrBefore(start);
+            if (first < 0 || maxEnds[first] <= start) {
+                report.add(Kind.OUTSIDE_SLOT, machine, piece, start, end, first, "starts outside productive time");
+                return;
+            }
+            int last = slotAtOrBefore(end - 1);
+            if (last < 0 || maxEnds[last] < end) {
+                report.add(Kind.OUTSIDE_SLOT, machine, piece, start, end, last, "ends outside productive time");
+                return;
+            }
+            long productive = axis.toProductive(end) - axis.toProductive(start);
+            if (productive != cycleTime) {
+                report.add(Kind.WRONG_DURATION, machine, piece, start, end, -1,
+                        "gets " + productive + " s of productive time, cycle time is " + cycleTime + " s");
+            }
+        }
+    }
+
+    public static final class Violation {
+        private final Kind kind;
+        private final int machine;
+        private final int piece;
+        private final long start;
+        private final long end;
+        private final int slot;
+        private final String message;
+
+        private Violation(Kind kind, int machine, int piece, long start, long end, int slot, String message) {
+            this.kind = kind;
+            this.machine = machine;
+            this.piece = piece;
+            this.start = start;
+            this.end = end;
+            this.slot = slot;
+            this.message = message;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        // -1 for whole-schedule violations such as the piece count
+        public int getMachine() {
+            return machine;
+        }
+
+        public int getPiece() {
+            return piece;
+        }
+
+        // Epoch seconds
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        // Index in the machine's slots sorted by start, -1 when no slot is involved
+        public int getSlot() {
+            return slot;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            if (machine < 0) {
+                return kind + ": " + message;
+            }
+            return kind + " machine " + machine + " piece " + piece + " [" + start + ", " + end + "): " + message;
+        }
+    }
+
+    public static final class Report {
+        private final List<Violation> violations = new ArrayList<>();
+        private int count;
+
+        private void add(Kind kind, int machine, int piece, long start, long end, int slot, String message) {
+            if (violations.size() < MAX_VIOLATIONS) {
+                violations.add(new Violation(kind, machine, piece, start, end, slot, message));
+            }
+            count++;
+        }
+
+        public boolean isValid() {
+            return count == 0;
+        }
+
+        public List<Violation> getViolations() {
+            return violations;
+        }
+
+        // All violations, also those beyond MAX_VIOLATIONS
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            if (isValid()) {
+                return "Schedule is valid";
+            }
+            StringBuilder text = new StringBuilder(count + " violations\n");
+            for (Violation violation : violations) {
+                text.append(violation).append('\n');
+            }
+            if (count > violations.size()) {
+                text.append("... ").append(count - violations.size()).append(" more\n");
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package es.emi;
+
+import java.time.ZonedDateTime;
+
+// A task of a published schedule, a time slot that remembers which piece it processes. The piece id is
+// the one of the ScheduleResult it came from and stays with the task when its times change.
+public class ScheduledTask extends TimeSlot {
+
+    private final int piece;
+
+    public ScheduledTask(ZonedDateTime startTime, ZonedDateTime endTime, int piece) {
+        super(startTime, endTime);
+        this.piece = piece;
+    }
+
+    public int getPiece() {
+        return piece;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Piece %d: [%s - %s]", piece, getStartTime(), getEndTime());
+    }
+}
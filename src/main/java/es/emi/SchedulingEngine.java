@@ -0,0 +1,63 @@
+package es.emi;
+
+public enum SchedulingEngine {
+
+    BASE, A, B, C, BULK, LNS, LEXICOGRAPHIC, DISTRIBUTED, RESUMABLE;
+
+    // Uses the tuned profile of the instance's class unless the config brings its own parameters
+    public ScheduleResult solve(SchedulingInstance instance, SolverConfig config) {
+        SolveLog log = config.getLog();
+        if (log != null) {
+            log.info(this + ": " + instance.getNumMachines() + " machines, " + instance.getNumSlots() + " slots, "
+                    + instance.getNumPieces() + " pieces");
+        }
+
+        ScheduleResult result = solveWith(instance, TuningProfiles.shared().apply(this, instance, config));
+
+        // Never hand out a schedule that breaks the calendars, the check is a sort and a sweep per machine
+        if (result.hasSolution()) {
+            ScheduleValidator.Report report = ScheduleValidator.validate(result, instance, this == RESUMABLE);
+            if (!report.isValid()) {
+                if (log != null) {
+                    log.info(this + " produced an invalid schedule: " + report);
+                }
+                throw new IllegalStateException(this + " produced an invalid schedule: " + report);
+            }
+        }
+
+        if (log != null && config.getResources() != null) {
+            log.info(config.getResources().toString());
+        }
+        if (log != null) {
+            log.info(this + " " + result.getStatus() + (result.hasSolution() ? ", makespan " + result.getMakespan() + " s" : ""));
+        }
+        return result;
+    }
+
+    // One CP-SAT call per solve, so the model it exports reproduces the whole solve. LNS, LEXICOGRAPHIC and
+    // DISTRIBUTED solve a series of models that depend on the previous results
+    public boolean isSingleModel() {
+        return switch (this) {
+            case LNS, LEXICOGRAPHIC, DISTRIBUTED -> false;
+            default -> true;
+        };
+    }
+
+    private ScheduleResult solveWith(SchedulingInstance instance, SolverConfig config) {
+        int numMachines = instance.getNumMachines();
+        int numPieces = instance.getNumPieces();
+        int[] cycleTimes = instance.getCycleTimes();
+
+        return switch (this) {
+            case BASE -> MultiMachineScheduling.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), instance.getMaxEnd(), config);
+            case A -> MultiMachineSchedulingA.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), instance.getMaxEnd(), config);
+            case B -> MultiMachineSchedulingB.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), instance.getMaxEnd(), config);
+            case C -> MultiMachineSchedulingC.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), config);
+            case BULK -> MultiMachineSchedulingBulk.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), config);
+            case LNS -> LnsScheduling.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), config);
+            case LEXICOGRAPHIC -> LexicographicScheduling.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), config);
+            case DISTRIBUTED -> DistributedScheduling.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), config);
+            case RESUMABLE -> ResumableScheduling.solver(numMachines, numPieces, cycleTimes, instance.getProductiveIntervals(), config);
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package es.emi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SchedulingInstance {
+
+    private final int numPieces;
+    private final int[] cycleTimes;
+    private final ZonedDateTime[][][] productiveIntervals;
+    private final int maxEnd;
+
+    public SchedulingInstance(int numPieces, int[] cycleTimes, ZonedDateTime[][][] productiveIntervals, int maxEnd) {
+        if (cycleTimes.length < productiveIntervals.length) {
+            throw new IllegalArgumentException("Missing cycle times: " + cycleTimes.length + " for " + productiveIntervals.length + " machines");
+        }
+        this.numPieces = numPieces;
+        this.cycleTimes = cycleTimes;
+        this.productiveIntervals = productiveIntervals;
+        this.maxEnd = maxEnd;
+    }
+
+    // Machine speed is the cycle time in seconds, as in ProductionScheduling
+    public static SchedulingInstance fromMachines(List<Machine> machines, int numPieces) {
+        int[] cycleTimes = new int[machines.size()];
+        ZonedDateTime[][][] productiveIntervals = new ZonedDateTime[machines.size()][][];
+
+        for (int m = 0; m < machines.size(); m++) {
+            Machine machine = machines.get(m);
+            cycleTimes[m] = machine.getSpeed();
+
+            List<TimeSlot> slots = machine.getSlots();
+            productiveIntervals[m] = new ZonedDateTime[slots.size()][];
+            for (int j = 0; j < slots.size(); j++) {
+                productiveIntervals[m][j] = new ZonedDateTime[]{slots.get(j).getStartTime(), slots.get(j).getEndTime()};
+            }
+        }
+
+        return new SchedulingInstance(numPieces, cycleTimes, productiveIntervals, Integer.MAX_VALUE);
+    }
+
+    public int getNumMachines() {
+        return productiveIntervals.length;
+    }
+
+    public int getNumPieces() {
+        return numPieces;
+    }
+
+    public int[] getCycleTimes() {
+        return cycleTimes;
+    }
+
+    public ZonedDateTime[][][] getProductiveIntervals() {
+        return productiveIntervals;
+    }
+
+    public int getMaxEnd() {
+        return maxEnd;
+    }
+
+    public int getNumSlots() {
+        int slots = 0;
+        for (ZonedDateTime[][] calendar : productiveIntervals) {
+            slots += calendar.length;
+        }
+        return slots;
+    }
+
+    // Text file, or the instance inside a .snap snapshot
+    public static SchedulingInstance read(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".snap")) {
+            return InstanceSnapshot.read(file).getInstance();
+        }
+        return parse(Files.readString(file));
+    }
+
+    // The text format read by parse
+    public String format() {
+        StringBuilder text = new StringBuilder();
+        text.append("pieces ").append(numPieces).append('\n');
+        if (maxEnd != Integer.MAX_VALUE) {
+            text.append("horizon ").append(maxEnd).append('\n');
+        }
+        for (int m = 0; m < productiveIntervals.length; m++) {
+            text.append("machine ").append(cycleTimes[m]);
+            for (ZonedDateTime[] interval : productiveIntervals[m]) {
+                text.append(' ').append(interval[0]).append('/').append(interval[1]);
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    // Plain text format, one directive per line:
+    //   pieces 20
+    //   horizon 5184000
+    //   machine 900 2024-08-07T00:00:00Z/2024-08-07T00:15:00Z 2024-08-07T00:30:00Z/2024-08-07T00:45:00Z
+    public static SchedulingInstance parse(String text) {
+        int numPieces = -1;
+        int maxEnd = -1;
+        List<Integer> cycleTimes = new ArrayList<>();
+        List<ZonedDateTime[][]> calendars = new ArrayList<>();
+
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String[] tokens = lines[i].trim().split("\\s+");
+
+            if (tokens[0].isEmpty() || tokens[0].startsWith("#")) {
+                continue;
+            }
+
+            // Missing arguments and bad timestamps are reported like any other malformed input
+            try {
+                switch (tokens[0]) {
+                    case "pieces" -> numPieces = Integer.parseInt(tokens[1]);
+                    case "horizon" -> maxEnd = Integer.parseInt(tokens[1]);
+                    case "machine" -> {
+                        cycleTimes.add(Integer.parseInt(tokens[1]));
+                        ZonedDateTime[][] calendar = new ZonedDateTime[tokens.length - 2][];
+                        for (int j = 2; j < tokens.length; j++) {
+                            String[] bounds = tokens[j].split("/");
+                            calendar[j - 2] = new ZonedDateTime[]{ZonedDateTime.parse(bounds[0]), ZonedDateTime.parse(bounds[1])};
+                        }
+                        calendars.add(calendar);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown directive: " + tokens[0]);
+                }
+            } catch (IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": malformed " + tokens[0] + " line: " + e.getMessage(), e);
+            }
+        }
+
+        if (numPieces < 0 || calendars.isEmpty()) {
+            throw new IllegalArgumentException("Instance needs a pieces line and at least one machine");
+        }
+
+        int[] cycles = cycleTimes.stream().mapToInt(Integer::intValue).toArray();
+        return new SchedulingInstance(numPieces, cycles, calendars.toArray(new ZonedDateTime[0][][]), maxEnd < 0 ? Integer.MAX_VALUE : maxEnd);
+    }
+}
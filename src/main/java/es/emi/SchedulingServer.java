@@ -0,0 +1,296 @@
+package es.emi;
+
+import com.google.ortools.sat.SatParameters;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SchedulingServer {
+
+    public static final long DEFAULT_MAX_MODEL_SIZE = 5_000_000L;
+    public static final int DEFAULT_MAX_QUEUED = 64;
+
+    // Model size a single CP-SAT worker handles comfortably, bigger models get more workers
+    private static final long MODEL_SIZE_PER_WORKER = 50_000L;
+
+    private final HttpServer server;
+    private final ExecutorService connectionExecutor;
+    private final ThreadPoolExecutor solveExecutor;
+    private final Semaphore cores;
+    private final int totalCores;
+    private final long maxModelSize;
+    // Memory and build-time budget per solve, also picks the formulation for engine=AUTO
+    private final FormulationSelector selector = FormulationSelector.defaults();
+    private final AtomicLong solveCounter = new AtomicLong();
+
+    // When set, every solve is recorded there as an InstanceSnapshot for replay
+    private Path snapshotDirectory;
+    // Request logs go through the asynchronous sink, requests override the level with log=... and logEvery=...
+    private LogSink logSink = LogSink.shared();
+    private SolveLog.Level logLevel = SolveLog.Level.INFO;
+    private int logSampleEvery = 100;
+    // Per-solve guardrails, 0 for none: -Dscheduler.maxRssMb=... -Dscheduler.maxCpuSeconds=...
+    private long maxRssBytes = Long.getLong("scheduler.maxRssMb", 0L) << 20;
+    private double maxCpuSeconds = Double.parseDouble(System.getProperty("scheduler.maxCpuSeconds", "0"));
+
+    public SchedulingServer(int port, int maxQueued, long maxModelSize) throws IOException {
+        this.totalCores = Runtime.getRuntime().availableProcessors();
+        this.cores = new Semaphore(totalCores, true);
+        this.maxModelSize = maxModelSize;
+
+        // One solve per core at most, everything else waits in a bounded queue
+        this.solveExecutor = new ThreadPoolExecutor(totalCores, totalCores, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued));
+        this.connectionExecutor = newConnectionExecutor();
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(connectionExecutor);
+        this.server.createContext("/solve", this::handleSolve);
+        this.server.createContext("/status", this::handleStatus);
+    }
+
+    public void start() {
+        // Natives stay loaded and warm for the whole life of the server
+        NativeRuntime.warmUp();
+        server.start();
+        System.out.println("Scheduling server listening on " + server.getAddress());
+    }
+
+    public void stop() {
+        server.stop(0);
+        solveExecutor.shutdown();
+        connectionExecutor.shutdown();
+    }
+
+    public void setSnapshotDirectory(Path snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    public void setLogSink(LogSink logSink) {
+        this.logSink = logSink;
+    }
+
+    public void setLogLevel(SolveLog.Level logLevel) {
+        this.logLevel = logLevel;
+    }
+
+    public void setLogSampleEvery(int logSampleEvery) {
+        this.logSampleEvery = logSampleEvery;
+    }
+
+    // Process RSS above which a running search is stopped and returns its best schedule
+    public void setMaxRssBytes(long maxRssBytes) {
+        this.maxRssBytes = maxRssBytes;
+    }
+
+    public void setMaxCpuSeconds(double maxCpuSeconds) {
+        this.maxCpuSeconds = maxCpuSeconds;
+    }
+
+    public FormulationSelector getSelector() {
+        return selector;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "Use POST");
+            return;
+        }
+
+        SchedulingInstance instance;
+        String engineName = queryParameter(exchange, "engine", "C");
+        ModelSizeEstimate estimate;
+        SolveLog.Level level;
+        int sampleEvery;
+        try (InputStream body = exchange.getRequestBody()) {
+            level = SolveLog.Level.valueOf(queryParameter(exchange, "log", logLevel.name()));
+            sampleEvery = Integer.parseInt(queryParameter(exchange, "logEvery", String.valueOf(logSampleEvery)));
+            instance = SchedulingInstance.parse(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            estimate = "AUTO".equals(engineName)
+                    ? selector.select(instance, false, sizingConfig())
+                    : ModelSizeEstimate.of(SchedulingEngine.valueOf(engineName), instance, sizingConfig());
+        } catch (RuntimeException e) {
+            // Anything the body or the query parameters break is the client's error
+            respond(exchange, 400, e.getMessage() != null ? e.getMessage() : e.toString());
+            return;
+        }
+
+        // Admission control: oversized models are rejected before anything is built
+        if (estimate == null) {
+            StringBuilder message = new StringBuilder("No formulation fits the budget:\n");
+            for (ModelSizeEstimate candidate : selector.estimates(instance, false, sizingConfig())) {
+                message.append(candidate).append('\n');
+            }
+            respond(exchange, 413, message.toString());
+            return;
+        }
+        if (!selector.fits(estimate) || estimate.getSize() > maxModelSize) {
+            respond(exchange, 413, "Estimated " + estimate + " exceeds the budget");
+            return;
+        }
+
+        SchedulingEngine engine = estimate.getEngine();
+        int workers = workersFor(estimate.getSize());
+        long submitted = System.nanoTime();
+        Future<byte[]> response;
+        try {
+            SolveLog log = logSink.open("solve-" + solveCounter.incrementAndGet(), level, sampleEvery);
+            response = solveExecutor.submit(() -> solve(engine, instance, workers, submitted, log));
+        } catch (RejectedExecutionException e) {
+            respond(exchange, 503, "Solve queue is full");
+            return;
+        }
+
+        try {
+            respond(exchange, 200, "application/x-ndjson", response.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Interrupted");
+        } catch (ExecutionException e) {
+            respond(exchange, 500, String.valueOf(e.getCause()));
+        }
+    }
+
+    private byte[] solve(SchedulingEngine engine, SchedulingInstance instance, int workers, long submitted, SolveLog log)
+            throws InterruptedException, IOException {
+        // Waits until the cores this solve needs are free
+        cores.acquire(workers);
+        try {
+            long started = System.nanoTime();
+
+            SolverConfig config = new SolverConfig();
+            config.setNumWorkers(workers);
+            config.setLogSearchProgress(false);
+            config.setLog(log);
+            SolveResources resources = new SolveResources(maxRssBytes, maxCpuSeconds);
+            config.setResources(resources);
+            log.info("started after " + TimeUnit.NANOSECONDS.toMillis(started - submitted) + " ms in the queue, " + workers + " workers");
+
+            // The model of the first CP-SAT call, engines that solve several models only record the request
+            // and Replay runs the engine again
+            AtomicReference<InstanceSnapshot> captured = new AtomicReference<>();
+            if (snapshotDirectory != null && engine.isSingleModel()) {
+                config.setModelListener((model, parameters) ->
+                        captured.compareAndSet(null, new InstanceSnapshot(engine.name(), instance, parameters, model, null)));
+            }
+
+            ScheduleResult result = engine.solve(instance, config);
+
+            if (snapshotDirectory != null) {
+                InstanceSnapshot snapshot = captured.get() != null ? captured.get()
+                        : new InstanceSnapshot(engine.name(), instance, requestParameters(config), null, null);
+                new InstanceSnapshot(snapshot.getEngine(), instance, snapshot.getParameters(), snapshot.getModel(), result)
+                        .write(snapshotDirectory.resolve(log.getRequestId() + ".snap"));
+            }
+
+            long finished = System.nanoTime();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            body.write(("{\"engine\":\"" + engine + "\""
+                    + ",\"workers\":" + workers
+                    + ",\"queuedMillis\":" + TimeUnit.NANOSECONDS.toMillis(started - submitted)
+                    + ",\"solveMillis\":" + TimeUnit.NANOSECONDS.toMillis(finished - started)
+                    + ",\"cpuMillis\":" + Math.round(resources.getCpuSeconds() * 1000)
+                    + ",\"rssPeakBytes\":" + resources.getRssPeak()
+                    + ",\"rssDeltaBytes\":" + resources.getRssDelta()
+                    + (resources.isExhausted() ? ",\"stopped\":\"" + resources.getStopReason() + "\"" : "")
+                    + "}\n").getBytes(StandardCharsets.UTF_8));
+            new JsonLinesScheduleExporter().export(result, Channels.newChannel(body));
+            return body.toByteArray();
+        } finally {
+            cores.release(workers);
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "running " + solveExecutor.getActiveCount() + "\n"
+                + "queued " + solveExecutor.getQueue().size() + "\n"
+                + "coresInUse " + (totalCores - cores.availablePermits()) + "/" + totalCores + "\n");
+    }
+
+    private int workersFor(long modelSize) {
+        return (int) Math.max(1, Math.min(totalCores, modelSize / MODEL_SIZE_PER_WORKER));
+    }
+
+    // The request's solver settings as parameters, the form DistributedScheduling sends to its workers
+    private static SatParameters requestParameters(SolverConfig config) {
+        SatParameters.Builder parameters = SatParameters.newBuilder();
+        if (config.getBaseParameters() != null) {
+            parameters.mergeFrom(config.getBaseParameters());
+        }
+        if (config.getNumWorkers() > 0) {
+            parameters.setNumWorkers(config.getNumWorkers());
+        }
+        if (config.getMaxTimeInSeconds() > 0) {
+            parameters.setMaxTimeInSeconds(config.getMaxTimeInSeconds());
+        }
+        if (config.getMaxDeterministicTime() > 0) {
+            parameters.setMaxDeterministicTime(config.getMaxDeterministicTime());
+        }
+        return parameters.build();
+    }
+
+    // Estimates are taken before the worker count is known, so LNS is sized for the most a solve may get
+    private SolverConfig sizingConfig() {
+        SolverConfig config = new SolverConfig();
+        config.setNumWorkers(totalCores);
+        return config;
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name, String defaultValue) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                if (pair[0].equals(name) && pair.length == 2) {
+                    return pair[1];
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        respond(exchange, code, "text/plain; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int code, String contentType, byte[] bytes) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static ExecutorService newConnectionExecutor() {
+        // Virtual thread per connection on JDK 21+, the build itself still targets 17
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
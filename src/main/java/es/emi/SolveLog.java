@@ -0,0 +1,77 @@
+package es.emi;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+// Per-request handle on a LogSink. Every line carries the request id and the milliseconds since the
+// request started, so build time shows up as the gap before the "model ready" event.
+//   INFO      request start and end, model size when it is handed to CP-SAT, CP-SAT status
+//   PROGRESS  plus the CP-SAT search log: improving solutions always, other lines 1 in sampleEvery
+//   DEBUG     plus every CP-SAT line and the engines' own detail events
+public final class SolveLog {
+
+    public enum Level {
+        OFF, INFO, PROGRESS, DEBUG
+    }
+
+    // "#1 ", "#Done" ... improving solutions and the final summary of the search log
+    private static final Pattern SOLUTION_LINE = Pattern.compile("^#(\\d+|Done)\\s");
+
+    private final LogSink sink;
+    private final String requestId;
+    private final Level level;
+    private final int sampleEvery;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong solverLines = new AtomicLong();
+
+    SolveLog(LogSink sink, String requestId, Level level, int sampleEvery) {
+        this.sink = sink;
+        this.requestId = requestId;
+        this.level = level;
+        this.sampleEvery = Math.max(sampleEvery, 1);
+    }
+
+    // Callers check this before building expensive messages
+    public boolean isEnabled(Level event) {
+        return event != Level.OFF && level.compareTo(event) >= 0;
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public void log(Level event, String message) {
+        if (isEnabled(event)) {
+            sink.offer(String.format("[%s +%dms] %s", requestId, (System.nanoTime() - startNanos) / 1_000_000, message));
+        }
+    }
+
+    // CP-SAT log callback, may be called from the solver's own threads
+    public void solverLine(String line) {
+        if (line.isBlank()) {
+            return;
+        }
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, line);
+        } else if (isEnabled(Level.PROGRESS)
+                && (SOLUTION_LINE.matcher(line).find() || solverLines.getAndIncrement() % sampleEvery == 0)) {
+            log(Level.PROGRESS, line);
+        }
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+}
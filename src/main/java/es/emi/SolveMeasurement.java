@@ -0,0 +1,105 @@
+package es.emi;
+
+import com.google.ortools.sat.CpSolverStatus;
+
+import java.util.regex.Pattern;
+
+// One timed engine run: model size, CP-SAT deterministic time and branches, time to the first solution and to
+// a proven optimum, the times measured
+// from the engine call so model building counts. Shared by Tuner and RegressionSuite.
+public final class SolveMeasurement {
+
+    // "#1 ", "#2 " ... start the log lines of improving solutions
+    private static final Pattern SOLUTION_LINE = Pattern.compile("^#\\d+\\s");
+
+    private final ScheduleResult result;
+    // Variables plus constraints of the largest model handed to CP-SAT, LNS hands over many small ones
+    private final long modelSize;
+    // -1 when there is no solution or no proven optimum
+    private final double firstSolutionSeconds;
+    private final double optimalSeconds;
+    // Summed over every CP-SAT call, the same on every run with one worker and a deterministic time limit
+    private final double deterministicTime;
+    private final long branches;
+
+    private SolveMeasurement(ScheduleResult result, long modelSize, double firstSolutionSeconds, double optimalSeconds,
+                             double deterministicTime, long branches) {
+        this.result = result;
+        this.modelSize = modelSize;
+        this.firstSolutionSeconds = firstSolutionSeconds;
+        this.optimalSeconds = optimalSeconds;
+        this.deterministicTime = deterministicTime;
+        this.branches = branches;
+    }
+
+    // The config's log callback, model listener and response listener are replaced, everything else is used as given
+    public static SolveMeasurement run(SchedulingEngine engine, SchedulingInstance instance, SolverConfig config) {
+        long[] firstSolution = {-1};
+        long[] modelSize = {0};
+        double[] deterministicTime = {0};
+        long[] branches = {0};
+
+        SolverConfig measured = config.copy();
+        measured.setLogSearchProgress(true);
+        measured.setLogCallback(line -> {
+            if (SOLUTION_LINE.matcher(line).find()) {
+                synchronized (firstSolution) {
+                    if (firstSolution[0] < 0) {
+                        firstSolution[0] = System.nanoTime();
+                    }
+                }
+            }
+        });
+        measured.setModelListener((model, parameters) -> {
+            synchronized (modelSize) {
+                modelSize[0] = Math.max(modelSize[0], model.getVariablesCount() + model.getConstraintsCount());
+            }
+        });
+        measured.setResponseListener(response -> {
+            synchronized (branches) {
+                deterministicTime[0] += response.getDeterministicTime();
+                branches[0] += response.getNumBranches();
+            }
+        });
+
+        long started = System.nanoTime();
+        ScheduleResult result = engine.solve(instance, measured);
+        long finished = System.nanoTime();
+
+        // Engines that start from a heuristic schedule, like LNS, may never log an improving solution
+        if (firstSolution[0] < 0 && result.hasSolution()) {
+            firstSolution[0] = finished;
+        }
+        double firstSolutionSeconds = firstSolution[0] < 0 ? -1 : (firstSolution[0] - started) / 1e9;
+        double optimalSeconds = result.getStatus() == CpSolverStatus.OPTIMAL ? (finished - started) / 1e9 : -1;
+        return new SolveMeasurement(result, modelSize[0], firstSolutionSeconds, optimalSeconds, deterministicTime[0], branches[0]);
+    }
+
+    public ScheduleResult getResult() {
+        return result;
+    }
+
+    public long getModelSize() {
+        return modelSize;
+    }
+
+    public double getFirstSolutionSeconds() {
+        return firstSolutionSeconds;
+    }
+
+    public double getOptimalSeconds() {
+        return optimalSeconds;
+    }
+
+    public double getDeterministicTime() {
+        return deterministicTime;
+    }
+
+    public long getBranches() {
+        return branches;
+    }
+
+    public boolean isOptimal() {
+        return optimalSeconds >= 0;
+    }
+}
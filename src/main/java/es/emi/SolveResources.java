@@ -0,0 +1,309 @@
+package es.emi;
+
+import com.google.ortools.sat.CpSolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Native memory and CPU of one request, read from /proc because most of a solve happens inside the
+// OR-Tools library where the JVM heap metrics see nothing. SolverConfig.solve samples before, every
+// sampleMillis during and after each CP-SAT call:
+//   RSS  resident set of the whole process from /proc/self/status, as the OOM killer sees it
+//   CPU  utime + stime of the solving thread and of every thread started while it solves, which are
+//        CP-SAT's workers, from /proc/self/task/<tid>/stat. Threads of other requests started in the same
+//        window are counted too, and a worker's last sampling period is lost when it exits.
+// When the RSS or the CPU limit is exceeded the search is stopped and the engine returns the best schedule
+// it has, later CP-SAT calls of the request (LNS, lexicographic stages) return right away. Without /proc
+// nothing is measured and no limit applies.
+public class SolveResources {
+
+    public static final long DEFAULT_SAMPLE_MILLIS = 50;
+
+    // USER_HZ, 100 on every Linux platform the natives are built for
+    private static final double TICKS_PER_SECOND = 100;
+    private static final Path PROC_SELF = Path.of("/proc/self");
+    private static final boolean SUPPORTED = Files.isReadable(PROC_SELF.resolve("status"));
+
+    private static volatile ScheduledExecutorService sampler;
+
+    // 0 means no limit
+    private long maxRssBytes;
+    private double maxCpuSeconds;
+    private long sampleMillis = DEFAULT_SAMPLE_MILLIS;
+
+    // tid -> {ticks when first seen, latest ticks}
+    private final Map<Integer, long[]> threadTicks = new HashMap<>();
+    private long rssBefore = -1;
+    private long rssPeak = -1;
+    private long rssAfter = -1;
+    private int solves;
+    private volatile String stopReason;
+
+    public SolveResources() {
+    }
+
+    public SolveResources(long maxRssBytes, double maxCpuSeconds) {
+        this.maxRssBytes = maxRssBytes;
+        this.maxCpuSeconds = maxCpuSeconds;
+    }
+
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    // Called by SolverConfig.solve on the solving thread right before CP-SAT starts
+    Sampling begin(CpSolver solver) {
+        Sampling sampling = new Sampling(solver);
+        if (SUPPORTED) {
+            sampling.start();
+        }
+        return sampling;
+    }
+
+    // True once a limit stopped a search, the request should return what it has
+    public boolean isExhausted() {
+        return stopReason != null;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    public synchronized double getCpuSeconds() {
+        long ticks = 0;
+        for (long[] thread : threadTicks.values()) {
+            ticks += thread[1] - thread[0];
+        }
+        return ticks / TICKS_PER_SECOND;
+    }
+
+    // Process RSS before the first CP-SAT call, -1 before any
+    public synchronized long getRssBefore() {
+        return rssBefore;
+    }
+
+    public synchronized long getRssPeak() {
+        return rssPeak;
+    }
+
+    public synchronized long getRssAfter() {
+        return rssAfter;
+    }
+
+    // Growth of the process RSS while the request ran, the native memory the search claimed
+    public synchronized long getRssDelta() {
+        return rssBefore < 0 ? 0 : rssPeak - rssBefore;
+    }
+
+    public synchronized int getSolves() {
+        return solves;
+    }
+
+    public long getMaxRssBytes() {
+        return maxRssBytes;
+    }
+
+    public void setMaxRssBytes(long maxRssBytes) {
+        this.maxRssBytes = maxRssBytes;
+    }
+
+    public double getMaxCpuSeconds() {
+        return maxCpuSeconds;
+    }
+
+    public void setMaxCpuSeconds(double maxCpuSeconds) {
+        this.maxCpuSeconds = maxCpuSeconds;
+    }
+
+    public long getSampleMillis() {
+        return sampleMillis;
+    }
+
+    public void setSampleMillis(long sampleMillis) {
+        this.sampleMillis = Math.max(sampleMillis, 1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (!SUPPORTED) {
+            return "resources: /proc not available";
+        }
+        return String.format("resources: %d solves, cpu %.2f s, rss %d MB before, %d MB peak (+%d MB), %d MB after%s",
+                solves, getCpuSeconds(), rssBefore >> 20, rssPeak >> 20, getRssDelta() >> 20, rssAfter >> 20,
+                stopReason == null ? "" : ", stopped: " + stopReason);
+    }
+
+    private synchronized void record(long rss, Map<Integer, Long> ticks, boolean first, boolean last) {
+        if (rss >= 0) {
+            if (first && rssBefore < 0) {
+                rssBefore = rss;
+            }
+            rssPeak = Math.max(rssPeak, rss);
+            if (last) {
+                rssAfter = rss;
+            }
+        }
+        for (Map.Entry<Integer, Long> thread : ticks.entrySet()) {
+            long[] known = threadTicks.get(thread.getKey());
+            if (known == null) {
+                threadTicks.put(thread.getKey(), new long[]{thread.getValue(), thread.getValue()});
+            } else {
+                known[1] = Math.max(known[1], thread.getValue());
+            }
+        }
+        if (last) {
+            solves++;
+        }
+    }
+
+    private void checkLimits(CpSolver solver, long rss) {
+        String reason = null;
+        if (maxRssBytes > 0 && rss > maxRssBytes) {
+            reason = "rss " + (rss >> 20) + " MB over " + (maxRssBytes >> 20) + " MB";
+        } else if (maxCpuSeconds > 0 && getCpuSeconds() > maxCpuSeconds) {
+            reason = String.format("cpu %.2f s over %.2f s", getCpuSeconds(), maxCpuSeconds);
+        }
+        if (reason != null) {
+            if (stopReason == null) {
+                stopReason = reason;
+            }
+            solver.stopSearch();
+        }
+    }
+
+    // One CP-SAT call of the request
+    final class Sampling {
+
+        private final CpSolver solver;
+        private int solvingThread = -1;
+        private Set<Integer> threadsBefore = Set.of();
+        private ScheduledFuture<?> task;
+
+        private Sampling(CpSolver solver) {
+            this.solver = solver;
+        }
+
+        private void start() {
+            // New threads get 0 as their first reading, the solving thread counts from now on
+            ScheduledExecutorService executor = sampler();
+            solvingThread = currentThreadId();
+            threadsBefore = listThreads();
+            Map<Integer, Long> ticks = new HashMap<>();
+            if (solvingThread >= 0) {
+                ticks.put(solvingThread, readTicks(solvingThread));
+            }
+            record(readRss(), ticks, true, false);
+            task = executor.scheduleAtFixedRate(this::sample, sampleMillis, sampleMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void sample() {
+            long rss = readRss();
+            record(rss, readSolveThreads(), false, false);
+            checkLimits(solver, rss);
+        }
+
+        // Called on the solving thread once CP-SAT returned
+        void end() {
+            if (task == null) {
+                return;
+            }
+            task.cancel(false);
+            record(readRss(), readSolveThreads(), false, true);
+        }
+
+        private Map<Integer, Long> readSolveThreads() {
+            Map<Integer, Long> ticks = new HashMap<>();
+            for (int tid : listThreads()) {
+                if (tid == solvingThread) {
+                    ticks.put(tid, readTicks(tid));
+                } else if (!threadsBefore.contains(tid)) {
+                    long value = readTicks(tid);
+                    if (value >= 0) {
+                        // Born during the solve, all of its time belongs to it
+                        ticks.put(tid, value);
+                        synchronized (SolveResources.this) {
+                            threadTicks.putIfAbsent(tid, new long[]{0, value});
+                        }
+                    }
+                }
+            }
+            ticks.values().removeIf(value -> value < 0);
+            return ticks;
+        }
+    }
+
+    private static ScheduledExecutorService sampler() {
+        if (sampler == null) {
+            synchronized (SolveResources.class) {
+                if (sampler == null) {
+                    sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "resource-sampler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return sampler;
+    }
+
+    // VmRSS of the process in bytes, -1 when it cannot be read
+    static long readRss() {
+        try {
+            for (String line : Files.readAllLines(PROC_SELF.resolve("status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    String[] fields = line.substring(6).trim().split("\\s+");
+                    return Long.parseLong(fields[0]) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Accounting is best effort
+        }
+        return -1;
+    }
+
+    // utime + stime of a thread of this process in clock ticks, -1 once it has exited
+    static long readTicks(int tid) {
+        try {
+            return parseTicks(Files.readString(PROC_SELF.resolve("task").resolve(Integer.toString(tid)).resolve("stat")));
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    // Kernel id of the calling thread, which Java does not expose
+    static int currentThreadId() {
+        try {
+            String stat = Files.readString(Path.of("/proc/thread-self/stat"));
+            return Integer.parseInt(stat.substring(0, stat.indexOf(' ')));
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static Set<Integer> listThreads() {
+        Set<Integer> threads = new HashSet<>();
+        try (Stream<Path> tasks = Files.list(PROC_SELF.resolve("task"))) {
+            tasks.forEach(task -> threads.add(Integer.parseInt(task.getFileName().toString())));
+        } catch (IOException | RuntimeException e) {
+            // Accounting is best effort
+        }
+        return threads;
+    }
+
+    // Fields 14 and 15, counted after the command name which may itself contain spaces and parentheses
+    private static long parseTicks(String stat) {
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+    }
+}
@@ -0,0 +1,216 @@
+package es.emi;
+
+import com.google.ortools.sat.CpModel;
+import com.google.ortools.sat.CpModelProto;
+import com.google.ortools.sat.CpSolver;
+import com.google.ortools.sat.CpSolverResponse;
+import com.google.ortools.sat.CpSolverStatus;
+import com.google.ortools.sat.SatParameters;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class SolverConfig {
+
+    // Applied first, the explicit settings below win over it
+    private SatParameters baseParameters;
+    // 0 keeps the CP-SAT default
+    private int numWorkers;
+    private boolean logSearchProgress = true;
+    // 0 means no time limit
+    private double maxTimeInSeconds;
+    // CP-SAT work units instead of wall time, reproducible with one worker; 0 means no limit
+    private double maxDeterministicTime;
+    // Variable names for debugging, engines emitting the proto in bulk skip them otherwise
+    private boolean debugNames;
+    // Receives the exact model and parameters right before solving, e.g. to record a snapshot
+    private BiConsumer<CpModelProto, SatParameters> modelListener;
+    // Receives the search log instead of stdout, only called when logSearchProgress is on
+    private Consumer<String> logCallback;
+    // Receives the response of every CP-SAT call, e.g. for its deterministic time and branch count
+    private Consumer<CpSolverResponse> responseListener;
+    // Request log, replaces stdout for the search log and receives the model-build events
+    private SolveLog log;
+    // Per-request native memory and CPU accounting and limits, shared by every CP-SAT call of the request
+    private SolveResources resources;
+
+    public static SolverConfig defaults() {
+        return new SolverConfig();
+    }
+
+    public static SolverConfig allCores() {
+        SolverConfig config = new SolverConfig();
+        config.setNumWorkers(Runtime.getRuntime().availableProcessors());
+        return config;
+    }
+
+    public SolverConfig copy() {
+        SolverConfig copy = new SolverConfig();
+        copy.baseParameters = baseParameters;
+        copy.numWorkers = numWorkers;
+        copy.logSearchProgress = logSearchProgress;
+        copy.maxTimeInSeconds = maxTimeInSeconds;
+        copy.maxDeterministicTime = maxDeterministicTime;
+        copy.debugNames = debugNames;
+        copy.modelListener = modelListener;
+        copy.logCallback = logCallback;
+        copy.responseListener = responseListener;
+        copy.log = log;
+        copy.resources = resources;
+        return copy;
+    }
+
+    public void configure(CpSolver solver) {
+        SatParameters.Builder parameters = solver.getParameters();
+
+        if (baseParameters != null) {
+            parameters.mergeFrom(baseParameters);
+        }
+        if (numWorkers > 0) {
+            parameters.setNumWorkers(numWorkers);
+        }
+        if (maxTimeInSeconds > 0) {
+            parameters.setMaxTimeInSeconds(maxTimeInSeconds);
+        }
+        if (maxDeterministicTime > 0) {
+            parameters.setMaxDeterministicTime(maxDeterministicTime);
+        }
+
+        boolean progress = logSearchProgress;
+        Consumer<String> callback = logCallback;
+        if (log != null) {
+            // CP-SAT only formats its log when the request wants it or a callback is listening
+            progress = log.isEnabled(SolveLog.Level.PROGRESS) || (logCallback != null && logSearchProgress);
+            callback = logCallback == null ? log::solverLine : logCallback.andThen(log::solverLine);
+        }
+        parameters.setLogSearchProgress(progress);
+        if (callback != null) {
+            parameters.setLogToStdout(false);
+            solver.setLogCallback(callback);
+        }
+    }
+
+    // Single place where the engines hand their model to CP-SAT
+    public CpSolverStatus solve(CpSolver solver, CpModel model) {
+        configure(solver);
+
+        if (modelListener != null) {
+            modelListener.accept(model.model(), solver.getParameters().build());
+        }
+        if (log != null && log.isEnabled(SolveLog.Level.INFO)) {
+            log.info("model ready: " + model.model().getVariablesCount() + " variables, "
+                    + model.model().getConstraintsCount() + " constraints");
+        }
+
+        CpSolverStatus status;
+        if (resources == null) {
+            status = solver.solve(model);
+        } else {
+            // A limit already hit by an earlier call of the request leaves no time for this one
+            if (resources.isExhausted()) {
+                solver.getParameters().setMaxTimeInSeconds(0);
+            }
+            SolveResources.Sampling sampling = resources.begin(solver);
+            try {
+                status = solver.solve(model);
+            } finally {
+                sampling.end();
+            }
+        }
+        if (responseListener != null) {
+            responseListener.accept(solver.response());
+        }
+        if (log != null) {
+            log.info("CP-SAT " + status + " in " + Math.round(solver.wallTime() * 1000) + " ms");
+        }
+        return status;
+    }
+
+    public SatParameters getBaseParameters() {
+        return baseParameters;
+    }
+
+    public void setBaseParameters(SatParameters baseParameters) {
+        this.baseParameters = baseParameters;
+    }
+
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    public void setNumWorkers(int numWorkers) {
+        this.numWorkers = numWorkers;
+    }
+
+    public boolean isLogSearchProgress() {
+        return logSearchProgress;
+    }
+
+    public void setLogSearchProgress(boolean logSearchProgress) {
+        this.logSearchProgress = logSearchProgress;
+    }
+
+    public double getMaxTimeInSeconds() {
+        return maxTimeInSeconds;
+    }
+
+    public void setMaxTimeInSeconds(double maxTimeInSeconds) {
+        this.maxTimeInSeconds = maxTimeInSeconds;
+    }
+
+    public double getMaxDeterministicTime() {
+        return maxDeterministicTime;
+    }
+
+    public void setMaxDeterministicTime(double maxDeterministicTime) {
+        this.maxDeterministicTime = maxDeterministicTime;
+    }
+
+    public boolean isDebugNames() {
+        return debugNames;
+    }
+
+    public void setDebugNames(boolean debugNames) {
+        this.debugNames = debugNames;
+    }
+
+    public BiConsumer<CpModelProto, SatParameters> getModelListener() {
+        return modelListener;
+    }
+
+    public void setModelListener(BiConsumer<CpModelProto, SatParameters> modelListener) {
+        this.modelListener = modelListener;
+    }
+
+    public Consumer<String> getLogCallback() {
+        return logCallback;
+    }
+
+    public void setLogCallback(Consumer<String> logCallback) {
+        this.logCallback = logCallback;
+    }
+
+    public Consumer<CpSolverResponse> getResponseListener() {
+        return responseListener;
+    }
+
+    public void setResponseListener(Consumer<CpSolverResponse> responseListener) {
+        this.responseListener = responseListener;
+    }
+
+    public SolveLog getLog() {
+        return log;
+    }
+
+    public void setLog(SolveLog log) {
+        this.log = log;
+    }
+
+    public SolveResources getResources() {
+        return resources;
+    }
+
+    public void setResources(SolveResources resources) {
+        this.resources = resources;
+    }
+}
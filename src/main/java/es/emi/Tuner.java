@@ -0,0 +1,144 @@
+package es.emi;
+
+import com.google.ortools.sat.SatParameters;
+import com.google.protobuf.TextFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+// Sweeps CP-SAT parameter sets over a corpus and saves the best one per instance class:
+//   java -cp ... es.emi.Tuner <engine> <instance|snapshot|directory ...> [--time-limit s] [--workers n] [--out dir]
+// Instances are SchedulingInstance text files or .snap snapshots. Each run measures the time to the first
+// solution and to a proven optimum, both from the engine call so model building counts. Runs that do not
+// prove optimality are scored at twice the time limit, the profile with the lowest mean wins and ties go
+// to the faster first solution.
+public class Tuner {
+
+    private static final double DEFAULT_TIME_LIMIT_SECONDS = 30;
+    private static final double UNSOLVED_PENALTY = 2;
+
+    // Candidates in protobuf text format, the same format the profiles are saved in
+    private static final Map<String, String> CANDIDATES = new LinkedHashMap<>();
+
+    static {
+        CANDIDATES.put("default", "");
+        CANDIDATES.put("linearization-0", "linearization_level: 0");
+        CANDIDATES.put("linearization-2", "linearization_level: 2");
+        CANDIDATES.put("quick-restart", "search_branching: PORTFOLIO_WITH_QUICK_RESTART_SEARCH");
+        CANDIDATES.put("light-presolve", "max_presolve_iterations: 1 cp_model_probing_level: 0");
+        CANDIDATES.put("no-symmetry", "symmetry_level: 0");
+        CANDIDATES.put("core", "optimize_with_core: true");
+        CANDIDATES.put("lp-workers", "subsolvers: \"default_lp\" subsolvers: \"max_lp\" subsolvers: \"quick_restart\" subsolvers: \"core\"");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: Tuner <engine> <instance|snapshot|directory ...> [--time-limit s] [--workers n] [--out dir]");
+            return;
+        }
+
+        SchedulingEngine engine = SchedulingEngine.valueOf(args[0]);
+        double timeLimit = DEFAULT_TIME_LIMIT_SECONDS;
+        int workers = Runtime.getRuntime().availableProcessors();
+        TuningProfiles profiles = TuningProfiles.shared();
+        List<Path> inputs = new ArrayList<>();
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--time-limit" -> timeLimit = Double.parseDouble(args[++i]);
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--out" -> profiles = new TuningProfiles(Path.of(args[++i]));
+                default -> inputs.add(Path.of(args[i]));
+            }
+        }
+
+        // Corpus grouped by instance class, every class is tuned on its own
+        Map<String, List<SchedulingInstance>> corpus = new TreeMap<>();
+        for (Path input : inputs) {
+            for (Path file : files(input)) {
+                SchedulingInstance instance = SchedulingInstance.read(file);
+                corpus.computeIfAbsent(TuningProfiles.classOf(engine, instance), key -> new ArrayList<>()).add(instance);
+            }
+        }
+        if (corpus.isEmpty()) {
+            throw new IllegalArgumentException("No instances found in " + inputs);
+        }
+
+        NativeRuntime.warmUp();
+
+        for (Map.Entry<String, List<SchedulingInstance>> instanceClass : corpus.entrySet()) {
+            System.out.printf("%s: %d instances%n", instanceClass.getKey(), instanceClass.getValue().size());
+            String best = null;
+            double[] bestScore = null;
+
+            for (Map.Entry<String, String> candidate : CANDIDATES.entrySet()) {
+                SatParameters parameters = parse(candidate.getValue());
+                double[] score = score(engine, instanceClass.getValue(), parameters, workers, timeLimit);
+                System.out.printf("  %-16s to optimal %8.2f s  first solution %8.2f s  optimal %d/%d%n", candidate.getKey(),
+                        score[0], score[1], (int) score[2], instanceClass.getValue().size());
+
+                if (bestScore == null || score[0] < bestScore[0] || (score[0] == bestScore[0] && score[1] < bestScore[1])) {
+                    best = candidate.getKey();
+                    bestScore = score;
+                }
+            }
+
+            String comment = String.format("%s for %s, %d instances, %d workers, %.0f s limit%n"
+                            + "mean time to optimal %.2f s, to first solution %.2f s", best, instanceClass.getKey(),
+                    instanceClass.getValue().size(), workers, timeLimit, bestScore[0], bestScore[1]);
+            profiles.save(instanceClass.getKey(), parse(CANDIDATES.get(best)), comment);
+            System.out.printf("  saved %s to %s%n", best, profiles.getDirectory());
+        }
+    }
+
+    // Mean time to optimal, mean time to first solution and the number of proven optima
+    private static double[] score(SchedulingEngine engine, List<SchedulingInstance> instances, SatParameters parameters,
+                                  int workers, double timeLimit) {
+        double toOptimal = 0;
+        double toFirst = 0;
+        int optimal = 0;
+
+        for (SchedulingInstance instance : instances) {
+            SolverConfig config = new SolverConfig();
+            config.setBaseParameters(parameters);
+            config.setNumWorkers(workers);
+            config.setMaxTimeInSeconds(timeLimit);
+
+            SolveMeasurement run = SolveMeasurement.run(engine, instance, config);
+            toFirst += run.getFirstSolutionSeconds() < 0 ? UNSOLVED_PENALTY * timeLimit : run.getFirstSolutionSeconds();
+            if (run.isOptimal()) {
+                toOptimal += run.getOptimalSeconds();
+                optimal++;
+            } else {
+                toOptimal += UNSOLVED_PENALTY * timeLimit;
+            }
+        }
+        return new double[]{toOptimal / instances.size(), toFirst / instances.size(), optimal};
+    }
+
+    private static SatParameters parse(String text) {
+        try {
+            SatParameters.Builder parameters = SatParameters.newBuilder();
+            TextFormat.merge(text, parameters);
+            return parameters.build();
+        } catch (TextFormat.ParseException e) {
+            throw new IllegalArgumentException("Bad candidate parameters: " + text, e);
+        }
+    }
+
+    private static List<Path> files(Path input) throws IOException {
+        if (!Files.isDirectory(input)) {
+            return List.of(input);
+        }
+        try (Stream<Path> files = Files.list(input)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package es.emi;
+
+import com.google.ortools.sat.SatParameters;
+import com.google.protobuf.TextFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Tuned CP-SAT parameters per instance class, one protobuf text file per class in a directory:
+//   tuning/bulk-m8-p64-s32.txt
+// An instance class is the engine plus machines, pieces and slots per machine rounded up to a power of
+// two, so the profile tuned on a corpus applies to instances of about the same shape. Written by Tuner,
+// read by SchedulingEngine.solve; a missing directory or file keeps the CP-SAT defaults.
+public class TuningProfiles {
+
+    // Overrides the default directory, -Dscheduler.tuning=path
+    public static final String DIRECTORY_PROPERTY = "scheduler.tuning";
+    private static final String EXTENSION = ".txt";
+
+    private static volatile TuningProfiles shared;
+
+    private final Path directory;
+    // Loaded profiles by class, empty when the class has none
+    private final Map<String, Optional<SatParameters>> cache = new ConcurrentHashMap<>();
+
+    public TuningProfiles(Path directory) {
+        this.directory = directory;
+    }
+
+    public static TuningProfiles shared() {
+        if (shared == null) {
+            synchronized (TuningProfiles.class) {
+                if (shared == null) {
+                    shared = new TuningProfiles(Path.of(System.getProperty(DIRECTORY_PROPERTY, "tuning")));
+                }
+            }
+        }
+        return shared;
+    }
+
+    public static String classOf(SchedulingEngine engine, SchedulingInstance instance) {
+        int numMachines = Math.max(instance.getNumMachines(), 1);
+        int slotsPerMachine = (instance.getNumSlots() + numMachines - 1) / numMachines;
+        return engine.name().toLowerCase() + "-m" + bucket(numMachines) + "-p" + bucket(instance.getNumPieces())
+                + "-s" + bucket(slotsPerMachine);
+    }
+
+    // Next power of two, so 33 to 64 pieces share a class
+    private static int bucket(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    // The config with the class profile as its base parameters. Configs that already carry parameters,
+    // e.g. from a snapshot or the tuner itself, are returned unchanged.
+    public SolverConfig apply(SchedulingEngine engine, SchedulingInstance instance, SolverConfig config) {
+        if (config.getBaseParameters() != null) {
+            return config;
+        }
+        SatParameters profile = load(classOf(engine, instance));
+        if (profile == null) {
+            return config;
+        }
+        SolverConfig tuned = config.copy();
+        tuned.setBaseParameters(profile);
+        return tuned;
+    }
+
+    public SatParameters load(String instanceClass) {
+        return cache.computeIfAbsent(instanceClass, key -> Optional.ofNullable(read(key))).orElse(null);
+    }
+
+    private SatParameters read(String instanceClass) {
+        Path file = directory.resolve(instanceClass + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            SatParameters.Builder parameters = SatParameters.newBuilder();
+            TextFormat.merge(Files.readString(file), parameters);
+            return parameters.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read tuning profile " + file, e);
+        }
+    }
+
+    // Comment lines go on top of the file, e.g. how the profile was measured
+    public void save(String instanceClass, SatParameters parameters, String comment) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String line : comment.split("\n")) {
+            text.append("# ").append(line).append('\n');
+        }
+        text.append(TextFormat.printer().printToString(parameters));
+
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve(instanceClass + EXTENSION), text);
+        cache.put(instanceClass, Optional.of(parameters));
+    }
+
+    // Drops the loaded profiles, the next solve reads the files again
+    public void reload() {
+        cache.clear();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+}